@@ -4,6 +4,9 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.build.*;
 import org.basex.build.xml.*;
@@ -16,6 +19,7 @@ import org.basex.util.*;
 import org.basex.util.list.*;
 import org.w3c.dom.*;
 import org.xmldb.api.base.*;
+import org.xmldb.api.base.Collection;
 import org.xmldb.api.modules.*;
 
 /**
@@ -25,6 +29,9 @@ import org.xmldb.api.modules.*;
  * @author Christian Gruen
  */
 public final class BXCollection implements Collection, BXXMLDBText {
+  /** Last generated id. */
+  private static final AtomicLong LAST_ID = new AtomicLong();
+
   /** Database context. */
   final BXDatabase db;
   /** Database context. */
@@ -153,40 +160,58 @@ public final class BXCollection implements Collection, BXXMLDBText {
 
   @Override
   public void storeResource(final Resource res) throws XMLDBException {
-    check();
-
-    // check if resource has any contents
-    final BXXMLResource xml = checkXML(res);
-    if(res.getContent() == null)
-      throw new XMLDBException(ErrorCodes.INVALID_RESOURCE, ERR_EMPTY);
+    storeResources(res);
+  }
 
-    // disallow storage of resources without id
-    final String id = res.getId();
-    if(id == null) throw new XMLDBException(ErrorCodes.INVALID_RESOURCE, ERR_ID);
+  /**
+   * Stores several resources at once. This method is a vendor extension of the
+   * XML:DB API: the documents are parsed in parallel, and they are inserted,
+   * and existing documents with the same ids are replaced, in a single update.
+   * If several resources have the same id, the last one will be stored.
+   * @param res resources
+   * @throws XMLDBException exception
+   */
+  public void storeResources(final Resource... res) throws XMLDBException {
+    check();
 
-    // document exists - delete old one first
-    final Resource old = getResource(id);
-    if(old != null) removeResource(getResource(id));
+    final LinkedHashMap<String, BXXMLResource> docs =
+        new LinkedHashMap<String, BXXMLResource>();
+    for(final Resource r : res) {
+      // check if resource has any contents
+      final BXXMLResource xml = checkXML(r);
+      if(r.getContent() == null)
+        throw new XMLDBException(ErrorCodes.INVALID_RESOURCE, ERR_EMPTY);
+
+      // disallow storage of resources without id
+      final String id = r.getId();
+      if(id == null) throw new XMLDBException(ErrorCodes.INVALID_RESOURCE, ERR_ID);
+      docs.remove(id);
+      docs.put(id, xml);
+    }
+    if(docs.isEmpty()) return;
 
-    // create parser, dependent on input type
-    final Object cont = xml.content;
+    // parse documents
+    final ArrayList<Data> parsed = parse(docs);
 
-    // insert document
-    final Data md;
-    try {
-      final Parser p = cont instanceof Document ?
-        new DOMWrapper((Document) cont, id, ctx.prop) :
-        Parser.singleParser(new IOContent((byte[]) cont, id), ctx.prop, "");
-      md = MemBuilder.build(id, p);
-    } catch(final IOException ex) {
-      throw new XMLDBException(ErrorCodes.INVALID_RESOURCE, ex.getMessage());
+    // documents exist - delete old ones first (starting with the last one)
+    final Data data = ctx.data();
+    final IntList il = new IntList();
+    for(final String id : docs.keySet()) {
+      final int pre = data.resources.doc(id);
+      if(pre != -1) il.add(pre);
     }
+    final int[] pres = il.toArray();
+    Arrays.sort(pres);
 
-    final Data data = ctx.data();
+    // insert documents
     if(!data.startUpdate()) throw new XMLDBException(ErrorCodes.VENDOR_ERROR, ERR_LOCK);
-    data.insert(data.meta.size, -1, new DataClip(md));
-    ctx.update();
-    data.finishUpdate();
+    try {
+      for(int p = pres.length - 1; p >= 0; p--) data.delete(pres[p]);
+      for(final Data md : parsed) data.insert(data.meta.size, -1, new DataClip(md));
+      ctx.update();
+    } finally {
+      data.finishUpdate();
+    }
   }
 
   @Override
@@ -198,13 +223,25 @@ public final class BXCollection implements Collection, BXXMLDBText {
     return pre == -1 ? null : new BXXMLResource(data, pre, id, this);
   }
 
+  /**
+   * {@inheritDoc}
+   * The returned ids are based on the current time. They are unique within
+   * the current process, but not across several processes that access the
+   * same database.
+   */
   @Override
   public String createId() throws XMLDBException {
-    final String[] res = listResources();
+    check();
+    final Data data = ctx.data();
     String id;
     do {
-      id = Long.toString(System.currentTimeMillis());
-    } while(exists(res, id));
+      long last, next;
+      do {
+        last = LAST_ID.get();
+        next = Math.max(System.currentTimeMillis(), last + 1);
+      } while(!LAST_ID.compareAndSet(last, next));
+      id = Long.toString(next);
+    } while(data.resources.doc(id) != -1);
     return id;
   }
 
@@ -252,14 +289,48 @@ public final class BXCollection implements Collection, BXXMLDBText {
   }
 
   /**
-   * Checks if the specified id exists in the specified id list.
-   * @param list id list
-   * @param id id to be found
-   * @return result of check
+   * Parses the specified documents. Several documents are parsed in parallel.
+   * @param docs documents, indexed by ids
+   * @return parsed documents
+   * @throws XMLDBException exception
    */
-  private static boolean exists(final String[] list, final String id) {
-    for(final String l : list) if(l.equals(id)) return true;
-    return false;
+  private ArrayList<Data> parse(final LinkedHashMap<String, BXXMLResource> docs)
+      throws XMLDBException {
+
+    final ArrayList<Callable<Data>> tasks = new ArrayList<Callable<Data>>();
+    for(final Map.Entry<String, BXXMLResource> doc : docs.entrySet()) {
+      final String id = doc.getKey();
+      final Object cont = doc.getValue().content;
+      tasks.add(new Callable<Data>() {
+        @Override
+        public Data call() throws IOException {
+          // create parser, dependent on input type
+          final Parser p = cont instanceof Document ?
+            new DOMWrapper((Document) cont, id, ctx.prop) :
+            Parser.singleParser(new IOContent((byte[]) cont, id), ctx.prop, "");
+          return MemBuilder.build(id, p);
+        }
+      });
+    }
+
+    final ArrayList<Data> list = new ArrayList<Data>(tasks.size());
+    final int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+    try {
+      if(threads == 1) {
+        for(final Callable<Data> task : tasks) list.add(task.call());
+      } else {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+          for(final Future<Data> f : pool.invokeAll(tasks)) list.add(f.get());
+        } finally {
+          pool.shutdownNow();
+        }
+      }
+    } catch(final Exception ex) {
+      final Throwable th = ex instanceof ExecutionException ? ex.getCause() : ex;
+      throw new XMLDBException(ErrorCodes.INVALID_RESOURCE, th.getMessage());
+    }
+    return list;
   }
 
   /**
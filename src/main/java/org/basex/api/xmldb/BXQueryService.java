@@ -6,6 +6,7 @@ import java.util.*;
 
 import org.basex.data.*;
 import org.basex.query.*;
+import org.basex.query.iter.*;
 import org.xmldb.api.base.*;
 import org.xmldb.api.base.Collection;
 import org.xmldb.api.modules.*;
@@ -116,19 +117,23 @@ final class BXQueryService implements XPathQueryService, BXXMLDBText {
 
     // creates a query instance
     final QueryProcessor qp = new QueryProcessor(query, coll.ctx).context(nodes);
+    coll.ctx.register(qp);
+    Iter iter = null;
     try {
-      coll.ctx.register(qp);
       // add default namespaces
       for(final String n : ns.keySet()) {
         qp.ctx.sc.ns.add(token(n), token(ns.get(n)), null);
       }
-      // perform query and return result
-      return new BXResourceSet(qp.execute(), coll);
+      iter = qp.iter();
     } catch(final QueryException ex) {
       throw new XMLDBException(ErrorCodes.VENDOR_ERROR, ex.getMessage());
     } finally {
-      qp.close();
-      coll.ctx.unregister(qp);
+      if(iter == null) {
+        qp.close();
+        coll.ctx.unregister(qp);
+      }
     }
+    // the resource set closes the query when all results have been fetched
+    return new BXResourceSet(qp, iter, coll.ctx, coll);
   }
 }
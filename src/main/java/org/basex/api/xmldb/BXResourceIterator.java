@@ -6,6 +6,7 @@ import org.xmldb.api.base.*;
 
 /**
  * Implementation of the ResourceIterator Interface for the XMLDB:API.
+ * Resources are fetched from the resource set while they are iterated.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -13,31 +14,56 @@ import org.xmldb.api.base.*;
 final class BXResourceIterator implements ResourceIterator, BXXMLDBText,
     Iterable<Resource> {
 
-  /** Resources. */
-  private final Iterator<Resource> res;
+  /** Resource set. */
+  private final BXResourceSet set;
+  /** Index of the next resource. */
+  private long pos;
 
   /**
-   * Standard constructor with result.
-   * @param r resources
+   * Standard constructor with resource set.
+   * @param s resource set
    */
-  BXResourceIterator(final ArrayList<Resource> r) {
-    res = r.iterator();
+  BXResourceIterator(final BXResourceSet s) {
+    set = s;
   }
 
   @Override
-  public boolean hasMoreResources() {
-    return res.hasNext();
+  public boolean hasMoreResources() throws XMLDBException {
+    return set.fetch(pos);
   }
 
   @Override
   public Resource nextResource() throws XMLDBException {
-    if(!res.hasNext())
+    if(!hasMoreResources())
       throw new XMLDBException(ErrorCodes.NO_SUCH_RESOURCE, ERR_ITER);
-    return res.next();
+    return set.getResource(pos++);
   }
 
   @Override
   public Iterator<Resource> iterator() {
-    return res;
+    return new Iterator<Resource>() {
+      @Override
+      public boolean hasNext() {
+        try {
+          return hasMoreResources();
+        } catch(final XMLDBException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+
+      @Override
+      public Resource next() {
+        try {
+          return nextResource();
+        } catch(final XMLDBException ex) {
+          throw new NoSuchElementException(ex.getMessage());
+        }
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
   }
 }
@@ -2,72 +2,132 @@ package org.basex.api.xmldb;
 
 import java.util.*;
 
-import org.basex.data.*;
+import org.basex.core.*;
+import org.basex.query.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.item.*;
 import org.basex.util.*;
 import org.xmldb.api.base.*;
 import org.xmldb.api.base.Collection;
 
 /**
  * Implementation of the ResourceSet Interface for the XMLDB:API.
+ * Results are fetched from the query iterator when they are requested, and the
+ * resulting resources are cached. The query, and its database locks, are kept
+ * open until all results have been fetched, or until the set is cleared. The first
+ * results are fetched when the set is created: small results are thus completely
+ * available at once, and the query is closed immediately.
+ * {@link #getSize()} and {@link #addResource} fetch all remaining results.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 final class BXResourceSet implements ResourceSet, BXXMLDBText {
+  /** Number of results that are fetched when the set is created. */
+  private static final int PAGE = 1 << 10;
+
   /** Resources. */
-  private final ArrayList<Resource> res;
+  private final ArrayList<Resource> res = new ArrayList<Resource>();
   /** Collection reference. */
   private final Collection coll;
+  /** Database context. */
+  private final Context ctx;
+  /** Query processor ({@code null} if all results have been fetched). */
+  private QueryProcessor qp;
+  /** Query iterator ({@code null} if all results have been fetched). */
+  private Iter iter;
 
   /**
-   * Default constructor with result.
-   * @param r result
+   * Default constructor with query iterator.
+   * @param q registered query processor (will be closed and unregistered by this set)
+   * @param ir query iterator
+   * @param x database context
    * @param c collection
+   * @throws XMLDBException exception
    */
-  BXResourceSet(final Result r, final Collection c) {
-    // convert result into resource instances
-    res = new ArrayList<Resource>((int) r.size());
-    for(int s = 0; s < r.size(); ++s) res.add(new BXXMLResource(r, s, c));
+  BXResourceSet(final QueryProcessor q, final Iter ir, final Context x,
+      final Collection c) throws XMLDBException {
+    qp = q;
+    iter = ir;
+    ctx = x;
     coll = c;
+    fetch(PAGE - 1);
   }
 
   @Override
   public Resource getResource(final long i) throws XMLDBException {
-    if(i >= 0 && i < res.size()) return res.get((int) i);
+    if(i >= 0 && fetch(i)) return res.get((int) i);
     throw new XMLDBException(ErrorCodes.NO_SUCH_RESOURCE);
   }
 
   @Override
-  public void addResource(final Resource r) {
+  public void addResource(final Resource r) throws XMLDBException {
+    fetch(Long.MAX_VALUE);
     res.add(r);
   }
 
   @Override
-  public void removeResource(final long index) {
+  public void removeResource(final long index) throws XMLDBException {
+    fetch(index);
     res.remove((int) index);
   }
 
   @Override
   public BXResourceIterator getIterator() {
-    return new BXResourceIterator(res);
+    return new BXResourceIterator(this);
   }
 
   @Override
   public Resource getMembersAsResource() throws XMLDBException {
     final TokenBuilder tb = new TokenBuilder().add('<').add(XMLDB).add('>');
-    for(final Resource r : getIterator()) {
-      tb.add(r.getContent().toString());
+    final BXResourceIterator ri = getIterator();
+    while(ri.hasMoreResources()) {
+      tb.add(ri.nextResource().getContent().toString());
     }
     return new BXXMLResource(tb.add('<').add('/').add(XMLDB).add('>').finish(), coll);
   }
 
   @Override
-  public long getSize() {
+  public long getSize() throws XMLDBException {
+    fetch(Long.MAX_VALUE);
     return res.size();
   }
 
   @Override
   public void clear() {
     res.clear();
+    close();
+  }
+
+  /**
+   * Fetches results until the resource with the specified index exists, or until
+   * all results have been fetched.
+   * @param i index of the requested resource
+   * @return {@code true} if the resource exists
+   * @throws XMLDBException exception
+   */
+  boolean fetch(final long i) throws XMLDBException {
+    try {
+      while(iter != null && res.size() <= i) {
+        final Item it = iter.next();
+        if(it == null) close();
+        else res.add(new BXXMLResource(it, coll));
+      }
+    } catch(final QueryException ex) {
+      close();
+      throw new XMLDBException(ErrorCodes.VENDOR_ERROR, ex.getMessage());
+    }
+    return i < res.size();
+  }
+
+  /**
+   * Closes the query and releases its database locks.
+   */
+  private void close() {
+    if(qp == null) return;
+    qp.close();
+    ctx.unregister(qp);
+    qp = null;
+    iter = null;
   }
 }
@@ -16,9 +16,15 @@ import org.basex.io.*;
 import org.basex.io.out.*;
 import org.basex.io.serial.*;
 import org.basex.query.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
 import org.w3c.dom.*;
 import org.xml.sax.*;
+import org.xml.sax.ext.*;
+import org.xml.sax.helpers.*;
 import org.xmldb.api.base.*;
 import org.xmldb.api.modules.*;
 
@@ -34,9 +40,11 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
   /** String id. */
   private String id;
   /** Query result. */
-  private Result result;
+  private Item item;
   /** Cached content. */
   Object content;
+  /** Indicates if the content was assigned by the user. */
+  boolean assigned;
   /** Data reference. */
   Data data;
   /** Pre value or result position. */
@@ -54,14 +62,12 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
 
   /**
    * Constructor for query results.
-   * @param res query result
-   * @param p query counter
+   * @param it query result
    * @param c Collection
    */
-  BXXMLResource(final Result res, final int p, final Collection c) {
-    result = res;
+  BXXMLResource(final Item it, final Collection c) {
+    item = it;
     coll = c;
-    pos = p;
   }
 
   /**
@@ -102,8 +108,8 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
         final Serializer ser = Serializer.get(ao);
         if(data != null) {
           ser.serialize(new DBNode(data, pos));
-        } else if(result != null) {
-          result.serialize(ser, pos);
+        } else if(item != null) {
+          ser.serialize(item);
         } else {
           return null;
         }
@@ -118,6 +124,7 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
   @Override
   public void setContent(final Object value) throws XMLDBException {
     // allow only strings, byte arrays and {@link File} instances
+    assigned = true;
     if(value instanceof byte[]) {
       content = value;
     } else if(value instanceof String) {
@@ -138,7 +145,7 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
   public String getDocumentId() throws XMLDBException {
     // throw exception if resource result from query; does not conform to the
     // specs, but many query results are not related to a document anymore
-    if(result != null)
+    if(item != null)
      throw new XMLDBException(ErrorCodes.VENDOR_ERROR, ERR_DOC);
 
     // resource does not result from a query - return normal id
@@ -163,14 +170,30 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
   public void setContentAsDOM(final Node cont) throws XMLDBException {
     // allow only document instances...
     if(cont == null) throw new XMLDBException(ErrorCodes.INVALID_RESOURCE);
-    if(cont instanceof Document) content = cont;
-    else throw new XMLDBException(ErrorCodes.WRONG_CONTENT_TYPE);
+    if(!(cont instanceof Document)) throw new XMLDBException(ErrorCodes.WRONG_CONTENT_TYPE);
+    content = cont;
+    assigned = true;
   }
 
   @Override
   public void getContentAsSAX(final ContentHandler handler) throws XMLDBException {
     if(handler == null) throw new XMLDBException(ErrorCodes.INVALID_RESOURCE);
 
+    // emit events of database and query nodes directly
+    final ANode node = assigned ? null : data != null ? new DBNode(data, pos) :
+      item instanceof ANode ? (ANode) item : null;
+    if(node != null && node.type != NodeType.ATT && node.type != NodeType.NSP) {
+      try {
+        handler.startDocument();
+        sax(node, handler, true);
+        handler.endDocument();
+      } catch(final SAXException ex) {
+        throw new XMLDBException(ErrorCodes.VENDOR_ERROR, ex.getMessage());
+      }
+      return;
+    }
+
+    // parse serialized or assigned content
     final SAXParserFactory factory = SAXParserFactory.newInstance();
     factory.setNamespaceAware(true);
     factory.setValidating(false);
@@ -184,6 +207,51 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
     }
   }
 
+  /**
+   * Emits the SAX events of the specified node and its descendants.
+   * @param node node
+   * @param handler content handler
+   * @param top top-level node (all namespaces in scope will be reported)
+   * @throws SAXException SAX exception
+   */
+  private static void sax(final ANode node, final ContentHandler handler,
+      final boolean top) throws SAXException {
+
+    final Type type = node.type;
+    if(type == NodeType.DOC) {
+      final AxisIter ai = node.children();
+      for(ANode n; (n = ai.next()) != null;) sax(n, handler, top);
+    } else if(type == NodeType.ELM) {
+      final Atts ns = top ? node.nsScope() : node.namespaces();
+      for(int n = 0; n < ns.size(); n++) {
+        handler.startPrefixMapping(string(ns.name(n)), string(ns.value(n)));
+      }
+      final AttributesImpl atts = new AttributesImpl();
+      final AxisIter ai = node.attributes();
+      for(ANode a; (a = ai.next()) != null;) {
+        final QNm qn = a.qname();
+        atts.addAttribute(string(qn.uri()), string(qn.local()), string(qn.string()),
+            "CDATA", string(a.string()));
+      }
+      final QNm qn = node.qname();
+      final String uri = string(qn.uri()), local = string(qn.local());
+      final String name = string(qn.string());
+      handler.startElement(uri, local, name, atts);
+      final AxisIter ci = node.children();
+      for(ANode n; (n = ci.next()) != null;) sax(n, handler, false);
+      handler.endElement(uri, local, name);
+      for(int n = 0; n < ns.size(); n++) handler.endPrefixMapping(string(ns.name(n)));
+    } else if(type == NodeType.TXT) {
+      final char[] ch = string(node.string()).toCharArray();
+      handler.characters(ch, 0, ch.length);
+    } else if(type == NodeType.PI) {
+      handler.processingInstruction(string(node.name()), string(node.string()));
+    } else if(type == NodeType.COM && handler instanceof LexicalHandler) {
+      final char[] ch = string(node.string()).toCharArray();
+      ((LexicalHandler) handler).comment(ch, 0, ch.length);
+    }
+  }
+
   @Override
   public ContentHandler setContentAsSAX() throws XMLDBException {
     // ..might be replaced by a custom SAX content handler in future
@@ -211,6 +279,7 @@ final class BXXMLResource implements XMLResource, BXXMLDBText {
     public void endDocument() throws SAXException {
       try {
         res.content = new DBNode(((MemBuilder) builder).data()).serialize().toArray();
+        res.assigned = true;
       } catch(final QueryException ex) {
         error(new BaseXException(ex));
       }
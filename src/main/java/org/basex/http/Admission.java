@@ -0,0 +1,288 @@
+package org.basex.http;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.management.*;
+import javax.servlet.*;
+
+import org.basex.core.*;
+import org.basex.util.*;
+
+/**
+ * This class limits the number of requests that are concurrently processed by a
+ * servlet, and by a single user. Requests that exceed a limit are queued for a
+ * limited time. If the queue is full, or if the timeout is reached, the request
+ * is rejected. Requests are assigned to users by the name supplied with the
+ * request; credentials are only verified after admission, so that rejected
+ * requests do not cause any logins. Limits can be assigned as servlet init parameters,
+ * system properties or context parameters (see {@link HTTPContext#option}).
+ * Statistics are registered as management bean.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class Admission implements AdmissionMBean {
+  /** Option: maximum number of concurrent requests per servlet (0: unlimited). */
+  private static final String MAXREQUESTS = "maxrequests";
+  /** Option: maximum number of concurrent requests per user (0: unlimited). */
+  private static final String MAXUSERREQUESTS = "maxuserrequests";
+  /** Option: maximum number of waiting requests. */
+  private static final String REQUESTQUEUE = "requestqueue";
+  /** Option: maximum waiting time of a request (ms). */
+  private static final String REQUESTTIMEOUT = "requesttimeout";
+
+  /** Permits of the servlet ({@code null}: unlimited). */
+  private final Semaphore permits;
+  /** Permits of single users (entries are removed when they are no longer used). */
+  private final HashMap<String, Permits> users = new HashMap<String, Permits>();
+  /** Maximum number of concurrent requests per user. */
+  private final int perUser;
+  /** Maximum number of waiting requests. */
+  private final int queue;
+  /** Maximum waiting time (ms). */
+  private final long timeout;
+  /** Name of management bean ({@code null}: not registered). */
+  private ObjectName bean;
+
+  /** Number of active requests. */
+  private final AtomicInteger active = new AtomicInteger();
+  /** Number of waiting requests. */
+  private final AtomicInteger queued = new AtomicInteger();
+  /** Number of admitted requests. */
+  private final AtomicLong admitted = new AtomicLong();
+  /** Number of rejected requests. */
+  private final AtomicLong rejected = new AtomicLong();
+  /** Number of requests that had to wait. */
+  private final AtomicLong waited = new AtomicLong();
+  /** Total waiting time (ms). */
+  private final AtomicLong waitTime = new AtomicLong();
+  /** Maximum waiting time (ms). */
+  private final AtomicLong maxWaitTime = new AtomicLong();
+
+  /**
+   * Constructor.
+   * @param config servlet configuration
+   */
+  Admission(final ServletConfig config) {
+    final int max = (int) option(config, MAXREQUESTS, 0);
+    permits = max > 0 ? new Semaphore(max, true) : null;
+    perUser = (int) option(config, MAXUSERREQUESTS, 0);
+    queue = (int) option(config, REQUESTQUEUE, 64);
+    timeout = option(config, REQUESTTIMEOUT, 10000);
+    if(permits != null || perUser > 0) register(config.getServletName());
+  }
+
+  /**
+   * Admits a request. If no permit is available, the request waits until a permit
+   * is released, or is rejected with status code 503. The total waiting time is
+   * limited by the timeout.
+   * @param http HTTP context
+   * @return name of the user who has been admitted (required for releasing the permits)
+   * @throws HTTPException HTTP exception
+   */
+  String acquire(final HTTPContext http) throws HTTPException {
+    // the user is taken from the request (Basic header or default credentials) and
+    // authenticated later on, when the session is opened
+    final String name = perUser > 0 && http.user != null ? http.user : "";
+
+    // requests are queued per user first, so that a single user cannot
+    // block the permits of the servlet
+    final long deadline = System.currentTimeMillis() + timeout;
+    final Semaphore user = user(name);
+    if(enter(user, deadline)) {
+      if(enter(permits, deadline)) {
+        admitted.incrementAndGet();
+        active.incrementAndGet();
+        return name;
+      }
+      if(user != null) user.release();
+    }
+    unuse(name);
+    rejected.incrementAndGet();
+    http.res.setHeader(HTTPText.RETRY_AFTER, Long.toString(Math.max(1, timeout / 1000)));
+    throw HTTPErr.UNAVAILABLE.thrw();
+  }
+
+  /**
+   * Releases the permits of an admitted request.
+   * @param name name of the user, as returned by {@link #acquire}
+   */
+  void release(final String name) {
+    active.decrementAndGet();
+    if(permits != null) permits.release();
+    if(perUser <= 0) return;
+    synchronized(users) {
+      users.get(name).sem.release();
+    }
+    unuse(name);
+  }
+
+  /**
+   * Unregisters the management bean.
+   */
+  void close() {
+    if(bean == null) return;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(bean);
+    } catch(final JMException ex) {
+      Util.debug(ex);
+    }
+    bean = null;
+  }
+
+  @Override
+  public int getActive() {
+    return active.get();
+  }
+
+  @Override
+  public int getQueued() {
+    return queued.get();
+  }
+
+  @Override
+  public long getAdmitted() {
+    return admitted.get();
+  }
+
+  @Override
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  @Override
+  public long getWaited() {
+    return waited.get();
+  }
+
+  @Override
+  public long getWaitTime() {
+    return waitTime.get();
+  }
+
+  @Override
+  public long getMaxWaitTime() {
+    return maxWaitTime.get();
+  }
+
+  /**
+   * Acquires a permit of the specified semaphore.
+   * @param sem semaphore ({@code null}: unlimited)
+   * @param deadline time until which the request may wait
+   * @return success flag
+   */
+  private boolean enter(final Semaphore sem, final long deadline) {
+    if(sem == null || sem.tryAcquire()) return true;
+
+    // reject request if too many requests are waiting
+    if(queued.incrementAndGet() > queue) {
+      queued.decrementAndGet();
+      return false;
+    }
+    final long start = System.currentTimeMillis();
+    try {
+      return sem.tryAcquire(Math.max(0, deadline - start), TimeUnit.MILLISECONDS);
+    } catch(final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      queued.decrementAndGet();
+      final long time = System.currentTimeMillis() - start;
+      waited.incrementAndGet();
+      waitTime.addAndGet(time);
+      long max = maxWaitTime.get();
+      while(time > max && !maxWaitTime.compareAndSet(max, time)) max = maxWaitTime.get();
+    }
+  }
+
+  /**
+   * Returns the permits of the specified user and registers the request as user of
+   * the permits. {@link #unuse} must be called when the request is finished.
+   * @param name name of user
+   * @return semaphore, or {@code null} if the number of requests is unlimited
+   */
+  private Semaphore user(final String name) {
+    if(perUser <= 0) return null;
+    synchronized(users) {
+      Permits p = users.get(name);
+      if(p == null) {
+        p = new Permits(perUser);
+        users.put(name, p);
+      }
+      p.requests++;
+      return p.sem;
+    }
+  }
+
+  /**
+   * Unregisters a request as user of the permits of the specified user.
+   * The permits are discarded if they are not used anymore.
+   * @param name name of user
+   */
+  private void unuse(final String name) {
+    if(perUser <= 0) return;
+    synchronized(users) {
+      final Permits p = users.get(name);
+      if(--p.requests == 0) users.remove(name);
+    }
+  }
+
+  /**
+   * Registers the management bean.
+   * @param name name of servlet
+   */
+  private void register(final String name) {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName on = new ObjectName(Prop.DBPREFIX + "http:type=Admission,name=" +
+          ObjectName.quote(name));
+      if(server.isRegistered(on)) server.unregisterMBean(on);
+      server.registerMBean(this, on);
+      bean = on;
+    } catch(final JMException ex) {
+      Util.debug(ex);
+    }
+  }
+
+  /**
+   * Returns the value of a numeric option. Servlet init parameters take precedence
+   * over global options.
+   * @param config servlet configuration
+   * @param name name of option
+   * @param def default value
+   * @return value
+   */
+  private static long option(final ServletConfig config, final String name,
+      final long def) {
+
+    String val = config.getInitParameter(Prop.DBPREFIX + name);
+    if(val == null) val = config.getInitParameter(name);
+    if(val != null) {
+      try {
+        return Long.parseLong(val.trim());
+      } catch(final NumberFormatException ex) {
+        Util.errln("Warning! Invalid value: " + name + '=' + val);
+      }
+    }
+    return HTTPContext.option(name, def);
+  }
+
+  /** Permits of a single user. */
+  private static final class Permits {
+    /** Semaphore. */
+    final Semaphore sem;
+    /** Number of requests that are waiting for or holding permits. */
+    int requests;
+
+    /**
+     * Constructor.
+     * @param max maximum number of concurrent requests
+     */
+    Permits(final int max) {
+      sem = new Semaphore(max, true);
+    }
+  }
+}
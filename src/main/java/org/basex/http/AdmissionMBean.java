@@ -0,0 +1,51 @@
+package org.basex.http;
+
+/**
+ * Management interface for the admission control of a servlet.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public interface AdmissionMBean {
+  /**
+   * Returns the number of requests that are currently being processed.
+   * @return number of requests
+   */
+  int getActive();
+
+  /**
+   * Returns the number of requests that are currently waiting for admission.
+   * @return number of requests
+   */
+  int getQueued();
+
+  /**
+   * Returns the total number of admitted requests.
+   * @return number of requests
+   */
+  long getAdmitted();
+
+  /**
+   * Returns the total number of rejected requests.
+   * @return number of requests
+   */
+  long getRejected();
+
+  /**
+   * Returns the total number of requests that had to wait for admission.
+   * @return number of requests
+   */
+  long getWaited();
+
+  /**
+   * Returns the total waiting time of all requests (ms).
+   * @return waiting time
+   */
+  long getWaitTime();
+
+  /**
+   * Returns the maximum waiting time of a single request (ms).
+   * @return waiting time
+   */
+  long getMaxWaitTime();
+}
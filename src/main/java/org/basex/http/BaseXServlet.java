@@ -26,6 +26,8 @@ public abstract class BaseXServlet extends HttpServlet {
   protected String user;
   /** Servlet-specific password. */
   protected String pass;
+  /** Admission control. */
+  private Admission admission;
 
   @Override
   public void init(final ServletConfig config) throws ServletException {
@@ -46,6 +48,13 @@ public abstract class BaseXServlet extends HttpServlet {
     } catch(final IOException ex) {
       throw new ServletException(ex);
     }
+    admission = new Admission(config);
+  }
+
+  @Override
+  public void destroy() {
+    if(admission != null) admission.close();
+    super.destroy();
   }
 
   @Override
@@ -54,7 +63,9 @@ public abstract class BaseXServlet extends HttpServlet {
 
     final HTTPContext http = new HTTPContext(req, res, this);
     final boolean restxq = this instanceof RestXqServlet;
+    String admitted = null;
     try {
+      admitted = admission.acquire(http);
       run(http);
       http.log("", SC_OK);
     } catch(final HTTPException ex) {
@@ -80,6 +91,7 @@ public abstract class BaseXServlet extends HttpServlet {
         Util.out("_ RESPONSE ________________________________" + Prop.NL + res);
       }
       http.close();
+      if(admitted != null) admission.release(admitted);
     }
   }
 
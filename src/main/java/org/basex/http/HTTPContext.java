@@ -14,6 +14,8 @@ import javax.servlet.http.*;
 
 import org.basex.*;
 import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.core.cmd.Set;
 import org.basex.io.*;
 import org.basex.io.serial.*;
 import org.basex.server.*;
@@ -45,6 +47,14 @@ public final class HTTPContext {
   private static Context context;
   /** Initialization flag. */
   private static boolean init;
+  /** Session pool. */
+  private static final SessionPool SESSIONS = new SessionPool();
+  /** Maximum number of blocked logins. */
+  private static final int MAXBLOCKED = 10000;
+  /** Blocked logins (client addresses and user names), and the times until which
+   * they will be blocked. */
+  private static final LinkedHashMap<String, Long> BLOCKED =
+      new LinkedHashMap<String, Long>();
 
   /** Performance. */
   private final Performance perf = new Performance();
@@ -52,6 +62,12 @@ public final class HTTPContext {
   private final String[] segments;
   /** Current user session. */
   private LocalSession session;
+  /** User of the current session. */
+  private String suser;
+  /** Original values of the options that have been changed in the current session. */
+  private final HashMap<String, String> options = new HashMap<String, String>();
+  /** Indicates if the current session can be reused by other requests. */
+  private boolean reuse = true;
   /** Password. */
   private String pass;
 
@@ -137,6 +153,103 @@ public final class HTTPContext {
     res.setContentType(new TokenBuilder(ct).add(CHARSET).add(enc).toString());
   }
 
+  /**
+   * Returns an entity tag (without quotes) for a resource with the specified
+   * modification time and size.
+   * @param time modification time
+   * @param size size
+   * @return entity tag
+   */
+  public static String etag(final long time, final long size) {
+    return Long.toHexString(time) + '-' + Long.toHexString(size);
+  }
+
+  /**
+   * Assigns the entity tag and modification time to the response and evaluates
+   * conditional request headers. If the resource has not been modified,
+   * status code 304 is assigned.
+   * @param etag quoted entity tag
+   * @param time modification time
+   * @return {@code true} if the resource has been modified, and needs to be returned
+   */
+  public boolean modified(final String etag, final long time) {
+    res.setHeader(ETAG, etag);
+    res.setDateHeader(LAST_MODIFIED, time);
+
+    final boolean mod;
+    final String inm = req.getHeader(IF_NONE_MATCH);
+    if(inm != null) {
+      mod = !matches(inm, etag);
+    } else {
+      long ims = -1;
+      try {
+        ims = req.getDateHeader(IF_MODIFIED_SINCE);
+      } catch(final IllegalArgumentException ex) {
+        // ignore invalid dates
+      }
+      // dates are compared with a precision of seconds
+      mod = ims == -1 || time / 1000 > ims / 1000;
+    }
+    if(!mod) res.setStatus(SC_NOT_MODIFIED);
+    return mod;
+  }
+
+  /**
+   * Returns the byte ranges that have been requested via the {@code Range} header.
+   * @param etag quoted entity tag of the resource
+   * @param size size of the resource
+   * @return inclusive start and end positions, an empty array if no range can
+   * be satisfied, or {@code null} if the complete resource is to be returned
+   */
+  public long[][] ranges(final String etag, final long size) {
+    final String range = req.getHeader(RANGE);
+    if(range == null || !range.startsWith(BYTES + '=')) return null;
+    // ignore ranges if the resource has been changed
+    final String ir = req.getHeader(IF_RANGE);
+    if(ir != null && !ir.equals(etag)) return null;
+
+    final ArrayList<long[]> list = new ArrayList<long[]>();
+    for(final String r : range.substring(BYTES.length() + 1).split(",")) {
+      final String s = r.trim();
+      final int i = s.indexOf('-');
+      if(i == -1) return null;
+      final long start, end;
+      try {
+        if(i == 0) {
+          // suffix range
+          start = Math.max(0, size - Long.parseLong(s.substring(1)));
+          end = size - 1;
+        } else {
+          start = Long.parseLong(s.substring(0, i));
+          final String e = s.substring(i + 1);
+          final long last = e.isEmpty() ? size - 1 : Long.parseLong(e);
+          // syntactically invalid ranges: ignore header
+          if(last < start) return null;
+          end = Math.min(last, size - 1);
+        }
+      } catch(final NumberFormatException ex) {
+        return null;
+      }
+      if(start < size && start <= end) list.add(new long[] { start, end });
+    }
+    return list.toArray(new long[list.size()][]);
+  }
+
+  /**
+   * Checks if an entity tag is contained in the specified header value.
+   * @param value header value
+   * @param etag quoted entity tag
+   * @return result of check
+   */
+  private static boolean matches(final String value, final String etag) {
+    for(final String v : value.split(",")) {
+      final String s = v.trim();
+      if(s.equals("*") || s.equals(etag) || s.startsWith("W/") && s.substring(2).equals(etag))
+        return true;
+    }
+    return false;
+  }
+
   /**
    * Returns the media type defined in the specified serialization properties.
    * @param sprop serialization properties
@@ -236,26 +349,40 @@ public final class HTTPContext {
    * @param p password
    */
   public void credentials(final String u, final String p) {
+    // release session if it has been opened with other credentials
+    if(session != null && !(u != null && u.equals(user) && p != null && p.equals(pass)))
+      close();
     user = u;
     pass = p;
   }
 
   /**
-   * Creates a new {@link LocalSession} instance.
+   * Returns a {@link LocalSession} instance. Sessions are taken from a pool and
+   * returned to it when the request has been processed (see {@link #close}).
    * @return database session
    * @throws IOException I/O exception
    */
   public LocalSession session() throws IOException {
     if(session == null) {
-      final byte[] address = token(req.getRemoteAddr());
+      // logins are blocked per client address and user, so that failed logins
+      // do not affect other users of the same address
+      final String login = req.getRemoteAddr() + '|' + user;
+      final byte[] address = token(login);
+      // reject logins that are blocked after failures, unless the credentials
+      // have recently been verified
+      if(!SESSIONS.verified(context(), user, pass)) blocked(login);
       try {
         if(user == null || user.isEmpty() || pass == null || pass.isEmpty())
           throw new LoginException(NOPASSWD);
-        session = new LocalSession(context(), user, pass);
+        session = SESSIONS.get(context(), user, pass);
+        suser = user;
         context.blocker.remove(address);
+        synchronized(BLOCKED) {
+          BLOCKED.remove(login);
+        }
       } catch(final LoginException ex) {
-        // delay users with wrong passwords
-        for(int d = context.blocker.delay(address); d > 0; d--) Performance.sleep(1000);
+        // block users with wrong passwords (without suspending the current thread)
+        block(login, System.currentTimeMillis() + context.blocker.delay(address) * 1000L);
         throw ex;
       }
     }
@@ -263,10 +390,68 @@ public final class HTTPContext {
   }
 
   /**
-   * Closes an open database session.
+   * Assigns a new value to an option of the current session.
+   * The original value will be restored before the session is reused.
+   * @param option option
+   * @param value value
+   * @throws IOException I/O exception
+   */
+  public void set(final Object[] option, final Object value) throws IOException {
+    set(option[0].toString(), value.toString());
+  }
+
+  /**
+   * Assigns a new value to an option of the current session.
+   * The original value will be restored before the session is reused.
+   * @param option name of option
+   * @param value value
+   * @throws IOException I/O exception
+   */
+  public void set(final String option, final String value) throws IOException {
+    final LocalSession ls = session();
+    final String key = option.toUpperCase(Locale.ENGLISH);
+    if(!options.containsKey(key)) {
+      options.put(key, ls.execute(new Get(key)).split(Text.COLS, 2)[1]);
+    }
+    ls.execute(new Set(key, value));
+  }
+
+  /**
+   * Prevents the current session from being reused by other requests.
+   * Must be called if the session state may have been changed in a way that
+   * cannot be reset, e.g. by arbitrary commands.
+   */
+  public void discard() {
+    reuse = false;
+  }
+
+  /**
+   * Releases the current database session. Its state is reset, and it is returned
+   * to the session pool, or closed if it cannot be reused.
    */
   public void close() {
-    if(session != null) session.close();
+    if(session == null) return;
+    final LocalSession ls = session;
+    session = null;
+    try {
+      if(reuse) {
+        // reset output stream, opened database and changed options
+        ls.setOutputStream(null);
+        ls.execute(new Close());
+        for(final Map.Entry<String, String> entry : options.entrySet()) {
+          ls.execute(new Set(entry.getKey(), entry.getValue()));
+        }
+        SESSIONS.release(ls, suser, context());
+      } else {
+        ls.close();
+      }
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      ls.close();
+    } finally {
+      options.clear();
+      reuse = true;
+    }
   }
 
   /**
@@ -361,6 +546,26 @@ public final class HTTPContext {
     if(!context.mprop.is(MainProp.HTTPLOCAL)) new BaseXServer(context);
   }
 
+  /**
+   * Returns the value of a numeric HTTP option. HTTP options are not known by the
+   * database context; they can be assigned as system properties or context parameters
+   * by prefixing the key with {@code "org.basex."}.
+   * @param name name of option
+   * @param def default value
+   * @return value
+   */
+  public static long option(final String name, final long def) {
+    final String val = System.getProperty(Prop.DBPREFIX + name);
+    if(val != null) {
+      try {
+        return Long.parseLong(val.trim());
+      } catch(final NumberFormatException ex) {
+        Util.errln("Warning! Invalid value: " + name + '=' + val);
+      }
+    }
+    return def;
+  }
+
   /**
    * Converts the path to a string array, containing the single segments.
    * @param path path, or {@code null}
@@ -387,6 +592,47 @@ public final class HTTPContext {
 
   // PRIVATE METHODS ====================================================================
 
+  /**
+   * Blocks a login. Expired entries are removed, and the oldest entries are
+   * discarded if the maximum number of entries has been reached.
+   * @param login client address and user
+   * @param until time until which the login will be blocked
+   */
+  private static void block(final String login, final long until) {
+    final long time = System.currentTimeMillis();
+    synchronized(BLOCKED) {
+      BLOCKED.remove(login);
+      final Iterator<Long> it = BLOCKED.values().iterator();
+      while(it.hasNext()) {
+        if(it.next() <= time || BLOCKED.size() >= MAXBLOCKED) it.remove();
+      }
+      BLOCKED.put(login, until);
+    }
+  }
+
+  /**
+   * Checks if the specified login is blocked, and throws an exception
+   * that specifies when the next login attempt will be accepted.
+   * @param login client address and user
+   * @throws HTTPException HTTP exception
+   */
+  private void blocked(final String login) throws HTTPException {
+    final long time = System.currentTimeMillis();
+    final long until;
+    synchronized(BLOCKED) {
+      final Long l = BLOCKED.get(login);
+      if(l == null) return;
+      until = l;
+      if(until <= time) {
+        BLOCKED.remove(login);
+        return;
+      }
+    }
+    final long sec = (until - time + 999) / 1000;
+    res.setHeader(RETRY_AFTER, Long.toString(sec));
+    HTTPErr.LOGIN_BLOCKED_X.thrw(sec);
+  }
+
   /**
    * Returns a string with the remote user address.
    * @return user address
@@ -30,6 +30,15 @@ public enum HTTPErr {
   /** Error: 404, "No function found to process the request.". */
   NO_XQUERY(SC_NOT_FOUND, "No function found that matches the request."),
 
+  /** Error 416 (range not satisfiable), "Requested range cannot be satisfied: %.". */
+  RANGE_X(SC_REQUESTED_RANGE_NOT_SATISFIABLE, "Requested range cannot be satisfied: %."),
+
+  /** Error 429 (too many requests), "Login blocked; please retry in % seconds.". */
+  LOGIN_BLOCKED_X(429, "Login blocked; please retry in % seconds."),
+
+  /** Error 503 (service unavailable), "Too many requests; please retry later.". */
+  UNAVAILABLE(SC_SERVICE_UNAVAILABLE, "Too many requests; please retry later."),
+
   /** Error 501, "Method not supported: %.". */
   NOT_IMPLEMENTED_X(SC_NOT_IMPLEMENTED, "Method not supported: %.");
 
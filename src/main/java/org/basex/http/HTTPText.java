@@ -13,6 +13,30 @@ public interface HTTPText {
   String AUTHORIZATION = "Authorization";
   /** HTTP basic authentication. */
   String BASIC = "Basic";
+  /** HTTP header: ETag. */
+  String ETAG = "ETag";
+  /** HTTP header: Last-Modified. */
+  String LAST_MODIFIED = "Last-Modified";
+  /** HTTP header: If-None-Match. */
+  String IF_NONE_MATCH = "If-None-Match";
+  /** HTTP header: If-Modified-Since. */
+  String IF_MODIFIED_SINCE = "If-Modified-Since";
+  /** HTTP header: Range. */
+  String RANGE = "Range";
+  /** HTTP header: If-Range. */
+  String IF_RANGE = "If-Range";
+  /** HTTP header: Accept-Ranges. */
+  String ACCEPT_RANGES = "Accept-Ranges";
+  /** HTTP header: Content-Range. */
+  String CONTENT_RANGE = "Content-Range";
+  /** HTTP header: Content-Length. */
+  String CONTENT_LENGTH = "Content-Length";
+  /** Range unit. */
+  String BYTES = "bytes";
+  /** Multipart byte ranges. */
+  String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=";
+  /** HTTP header: Retry-After. */
+  String RETRY_AFTER = "Retry-After";
   /** Location string. */
   String LOCATION = "location";
 
@@ -25,6 +49,9 @@ public interface HTTPText {
   /** Path to web configuration file. */
   String WEBCONF = WEB_INF + "web.xml";
 
+  /** Option: interval for checking RESTXQ modules for changes (ms). */
+  String RESTXQPOLL = "restxqpoll";
+
   /** Error: no password. */
   String NOPASSWD = "No username/password specified.";
   /** Error: unsupported authorization method. */
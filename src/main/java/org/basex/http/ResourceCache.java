@@ -0,0 +1,188 @@
+package org.basex.http;
+
+import static org.basex.data.DataText.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.util.*;
+
+/**
+ * This class caches meta data on database resources. Entries are validated by
+ * a stamp of the database (see {@link #stamp}), which changes whenever the
+ * database is updated. As raw files may be modified without updating the
+ * database, the size and modification date of cached raw files are checked as well.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ResourceCache {
+  /** Non-existing resource. */
+  public static final Resource NONE = new Resource(false, null, 0, 0);
+  /** Maximum number of cached resources per database. */
+  private static final int MAX = 4096;
+
+  /** Cached resources, indexed by database names and paths. */
+  private final HashMap<String, HashMap<String, Entry>> dbs =
+      new HashMap<String, HashMap<String, Entry>>();
+
+  /**
+   * Returns the stamp of a database, or {@code 0} if the database does not exist.
+   * The stamp is computed from the time of the last update, which has a resolution
+   * of milliseconds, and from the number of nodes and documents. If the database
+   * is opened, its meta data is taken from main memory, so that updates are
+   * reflected before they are flushed to disk. The stamp must be computed before
+   * the database is accessed.
+   * @param ctx database context
+   * @param db database
+   * @return stamp
+   */
+  public static long stamp(final Context ctx, final String db) {
+    final Data data = ctx.datas.pin(db);
+    if(data != null) {
+      try {
+        return stamp(data.meta);
+      } finally {
+        Close.close(data, ctx);
+      }
+    }
+
+    // database is not opened: read meta data from disk
+    final MetaData meta = new MetaData(db, ctx);
+    final IOFile inf = meta.dbfile(DATAINF);
+    if(!inf.exists()) return 0;
+    try {
+      final DataInput in = new DataInput(inf);
+      try {
+        meta.read(in);
+      } finally {
+        in.close();
+      }
+      return stamp(meta);
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      return 0;
+    }
+  }
+
+  /**
+   * Computes the stamp of the specified meta data.
+   * @param meta meta data
+   * @return stamp
+   */
+  private static long stamp(final MetaData meta) {
+    long stamp = 1;
+    stamp = stamp * 31 + meta.time;
+    stamp = stamp * 31 + meta.size;
+    stamp = stamp * 31 + meta.ndocs;
+    return stamp == 0 ? 1 : stamp;
+  }
+
+  /**
+   * Returns a cached resource.
+   * @param db database
+   * @param path resource path
+   * @param stamp current stamp of the database (see {@link #stamp})
+   * @return resource, or {@code null} if no valid entry exists
+   */
+  public synchronized Resource get(final String db, final String path, final long stamp) {
+    if(stamp == 0) return null;
+    final HashMap<String, Entry> map = dbs.get(db);
+    if(map == null) return null;
+    final Entry e = map.get(path);
+    if(e == null) return null;
+    if(e.valid(stamp)) return e.resource;
+    map.remove(path);
+    return null;
+  }
+
+  /**
+   * Caches a resource.
+   * @param db database
+   * @param path resource path
+   * @param stamp stamp of the database, computed before the resource was requested
+   * @param resource resource
+   * @param file raw file of the resource ({@code null} if the resource is no raw file)
+   */
+  public synchronized void add(final String db, final String path, final long stamp,
+      final Resource resource, final IOFile file) {
+
+    if(stamp == 0) return;
+    HashMap<String, Entry> map = dbs.get(db);
+    if(map == null) {
+      map = new HashMap<String, Entry>();
+      dbs.put(db, map);
+    } else if(map.size() >= MAX) {
+      map.clear();
+    }
+    map.put(path, new Entry(stamp, resource, file));
+  }
+
+  /**
+   * Meta data on a single resource.
+   */
+  public static final class Resource {
+    /** Existence flag. */
+    public final boolean exists;
+    /** Raw flag. */
+    public final boolean raw;
+    /** Content type. */
+    public final String type;
+    /** Size of raw resources (otherwise {@code 0}). */
+    public final long size;
+    /** Modification date. */
+    public final long modified;
+
+    /**
+     * Constructor.
+     * @param r raw flag
+     * @param t content type
+     * @param s size
+     * @param m modification date
+     */
+    public Resource(final boolean r, final String t, final long s, final long m) {
+      exists = t != null;
+      raw = r;
+      type = t;
+      size = s;
+      modified = m;
+    }
+  }
+
+  /** Cache entry. */
+  private static final class Entry {
+    /** Stamp. */
+    final long stamp;
+    /** Resource. */
+    final Resource resource;
+    /** Raw file ({@code null} if the resource is no raw file). */
+    final IOFile file;
+
+    /**
+     * Constructor.
+     * @param s stamp
+     * @param r resource
+     * @param f raw file
+     */
+    Entry(final long s, final Resource r, final IOFile f) {
+      stamp = s;
+      resource = r;
+      file = f;
+    }
+
+    /**
+     * Checks if the entry is still valid.
+     * @param st current stamp of the database
+     * @return result of check
+     */
+    boolean valid(final long st) {
+      return stamp == st && (file == null ||
+        file.length() == resource.size && file.timeStamp() == resource.modified);
+    }
+  }
+}
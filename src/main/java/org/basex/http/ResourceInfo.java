@@ -0,0 +1,72 @@
+package org.basex.http;
+
+import static org.basex.core.Text.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.http.ResourceCache.Resource;
+import org.basex.io.*;
+import org.basex.util.list.*;
+
+/**
+ * Command for looking up meta data on a single resource of the currently opened
+ * database. Only the resource with the exact path is considered; raw files are
+ * preferred to documents with the same path. The result can be requested via
+ * {@link #resource()} after the command has been executed.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ResourceInfo extends Command {
+  /** Resource. */
+  private Resource resource = ResourceCache.NONE;
+  /** Raw file of the resource ({@code null} if the resource is no raw file). */
+  private IOFile file;
+
+  /**
+   * Default constructor.
+   * @param path resource path
+   */
+  public ResourceInfo(final String path) {
+    super(Perm.READ, true, path);
+  }
+
+  @Override
+  protected boolean run() {
+    final String path = MetaData.normPath(args[0]);
+    if(path == null) return error(NAME_INVALID_X, args[0]);
+
+    final Data data = context.data();
+    final IOFile bin = data.meta.binary(path);
+    if(bin != null && bin.exists() && !bin.isDir()) {
+      resource = new Resource(true, MimeTypes.get(path), bin.length(), bin.timeStamp());
+      file = bin;
+    } else if(data.resources.doc(path) != -1) {
+      resource = new Resource(false, MimeTypes.APP_XML, 0, data.meta.time);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the resource.
+   * @return resource, or {@link ResourceCache#NONE} if it does not exist
+   */
+  public Resource resource() {
+    return resource;
+  }
+
+  /**
+   * Returns the raw file of the resource.
+   * @return file, or {@code null} if the resource is no raw file
+   */
+  public IOFile file() {
+    return file;
+  }
+
+  @Override
+  public boolean databases(final StringList db) {
+    // read lock on the currently opened database
+    db.add("");
+    return true;
+  }
+}
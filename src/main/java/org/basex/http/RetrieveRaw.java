@@ -0,0 +1,92 @@
+package org.basex.http;
+
+import static org.basex.core.Text.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Command for streaming a raw file of the currently opened database.
+ * In contrast to {@link org.basex.core.cmd.Retrieve}, the file contents are
+ * copied to the specified output stream in chunks and bypass the serializer.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class RetrieveRaw extends Command {
+  /** Buffer size. */
+  private static final int BUFFER = 1 << 16;
+  /** Output stream. */
+  private final OutputStream os;
+  /** Offset of the first byte to be returned. */
+  private final long offset;
+  /** Number of bytes to be returned ({@code -1}: all remaining bytes). */
+  private final long length;
+
+  /**
+   * Default constructor.
+   * @param path source path
+   * @param output output stream
+   */
+  public RetrieveRaw(final String path, final OutputStream output) {
+    this(path, output, 0, -1);
+  }
+
+  /**
+   * Constructor for streaming a byte range.
+   * @param path source path
+   * @param output output stream
+   * @param off offset of the first byte
+   * @param len number of bytes ({@code -1}: all remaining bytes)
+   */
+  public RetrieveRaw(final String path, final OutputStream output, final long off,
+      final long len) {
+    super(Perm.READ, true, path);
+    os = output;
+    offset = off;
+    length = len;
+  }
+
+  @Override
+  protected boolean run() {
+    final String path = MetaData.normPath(args[0]);
+    if(path == null) return error(NAME_INVALID_X, args[0]);
+
+    final IOFile bin = context.data().meta.binary(path);
+    if(bin == null || !bin.exists() || bin.isDir()) return error(RES_NOT_FOUND_X, path);
+
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(bin.file(), "r");
+      try {
+        final long size = raf.length();
+        final long end = length == -1 ? size : Math.min(size, offset + length);
+        raf.seek(offset);
+        final byte[] buffer = new byte[BUFFER];
+        for(long pos = offset; pos < end;) {
+          final int n = raf.read(buffer, 0, (int) Math.min(buffer.length, end - pos));
+          if(n <= 0) break;
+          os.write(buffer, 0, n);
+          pos += n;
+        }
+      } finally {
+        raf.close();
+      }
+      os.flush();
+      return true;
+    } catch(final IOException ex) {
+      return error(Util.message(ex));
+    }
+  }
+
+  @Override
+  public boolean databases(final StringList db) {
+    // read lock on the currently opened database
+    db.add("");
+    return true;
+  }
+}
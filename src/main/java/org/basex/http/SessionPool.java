@@ -0,0 +1,174 @@
+package org.basex.http;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.server.*;
+
+/**
+ * This class pools database sessions. Sessions are indexed by user names.
+ * If credentials have successfully been verified, they are cached as hash values
+ * for a short time, and idle sessions of the same user are reused without
+ * authenticating the user again. Along with the credentials, the password hash
+ * and the permissions of the user are stored. Cached credentials are discarded when
+ * they expire, or if the user has been dropped or modified in the meantime; in the
+ * latter cases, the idle sessions of the user are closed as well.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class SessionPool {
+  /** Option: maximum number of idle sessions per user. */
+  private static final String SESSIONPOOL = "sessionpool";
+  /** Option: lifetime of verified credentials (ms). */
+  private static final String AUTHCACHE = "authcache";
+
+  /** Idle sessions, indexed by user names. */
+  private final HashMap<String, ArrayList<LocalSession>> idle =
+      new HashMap<String, ArrayList<LocalSession>>();
+  /** Verified credentials, indexed by hashes. */
+  private final HashMap<String, Entry> verified = new HashMap<String, Entry>();
+
+  /**
+   * Checks if the specified credentials have recently been verified.
+   * @param ctx database context
+   * @param user user name
+   * @param pass password
+   * @return result of check
+   */
+  boolean verified(final Context ctx, final String user, final String pass) {
+    if(user == null || pass == null) return false;
+    final User u = ctx.users.get(user);
+    if(u == null) return false;
+    final String hash = md5(user + ':' + pass);
+    synchronized(this) {
+      final Entry entry = verified.get(hash);
+      return entry != null && entry.expires > System.currentTimeMillis() &&
+          entry.valid(u);
+    }
+  }
+
+  /**
+   * Returns an idle session, or creates a new one.
+   * @param ctx database context
+   * @param user user name
+   * @param pass password
+   * @return session
+   * @throws IOException I/O exception (including login exceptions)
+   */
+  LocalSession get(final Context ctx, final String user, final String pass)
+      throws IOException {
+
+    final String hash = md5(user + ':' + pass);
+    final User u = ctx.users.get(user);
+    ArrayList<LocalSession> stale = null;
+    synchronized(this) {
+      final Entry entry = verified.get(hash);
+      if(u == null || entry != null && !entry.valid(u)) {
+        // user has been dropped or modified: discard credentials and idle sessions
+        verified.remove(hash);
+        stale = idle.remove(user);
+      } else if(entry != null) {
+        if(entry.expires > System.currentTimeMillis()) {
+          final ArrayList<LocalSession> list = idle.get(user);
+          if(list != null && !list.isEmpty()) return list.remove(list.size() - 1);
+        } else {
+          verified.remove(hash);
+        }
+      }
+    }
+    close(stale);
+
+    // authenticate user and create new session
+    final LocalSession session = new LocalSession(ctx, user, pass);
+    final long ttl = HTTPContext.option(AUTHCACHE, 5000);
+    if(ttl > 0 && u != null) {
+      final long time = System.currentTimeMillis();
+      synchronized(this) {
+        // remove expired entries
+        if(verified.size() > 1000) {
+          final Iterator<Entry> it = verified.values().iterator();
+          while(it.hasNext()) {
+            if(it.next().expires <= time) it.remove();
+          }
+        }
+        verified.put(hash, new Entry(u, time + ttl));
+      }
+    }
+    return session;
+  }
+
+  /**
+   * Returns a session to the pool. The session must have been reset by the caller.
+   * The session is closed if the maximum number of idle sessions has been reached,
+   * or if the user has been dropped.
+   * @param session session
+   * @param user user name
+   * @param ctx database context
+   */
+  void release(final LocalSession session, final String user, final Context ctx) {
+    final int max = (int) HTTPContext.option(SESSIONPOOL, 8);
+    if(ctx.users.get(user) == null) {
+      final ArrayList<LocalSession> stale;
+      synchronized(this) {
+        stale = idle.remove(user);
+      }
+      close(stale);
+      session.close();
+      return;
+    }
+    synchronized(this) {
+      ArrayList<LocalSession> list = idle.get(user);
+      if(list == null) {
+        list = new ArrayList<LocalSession>();
+        idle.put(user, list);
+      }
+      if(list.size() < max) {
+        list.add(session);
+        return;
+      }
+    }
+    session.close();
+  }
+
+  /**
+   * Closes the specified sessions.
+   * @param list sessions (may be {@code null})
+   */
+  private static void close(final ArrayList<LocalSession> list) {
+    if(list != null) for(final LocalSession ls : list) ls.close();
+  }
+
+  /** Verified credentials. */
+  private static final class Entry {
+    /** Password hash of the user. */
+    final byte[] password;
+    /** Permissions of the user. */
+    final int perm;
+    /** Expiration time. */
+    final long expires;
+
+    /**
+     * Constructor.
+     * @param u user
+     * @param e expiration time
+     */
+    Entry(final User u, final long e) {
+      password = u.password;
+      perm = u.perm;
+      expires = e;
+    }
+
+    /**
+     * Checks if the password and the permissions of the user are unchanged.
+     * @param u current user
+     * @return result of check
+     */
+    boolean valid(final User u) {
+      return eq(password, u.password) && perm == u.perm;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.basex.http;
+
+import static org.basex.core.Text.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Command for storing a raw file in the currently opened database.
+ * In contrast to {@link org.basex.core.cmd.Store}, the contents are not copied:
+ * the specified file, which must reside on the same file system as the database
+ * (e.g., in the database directory), is moved to its target location. Readers
+ * will either see the old or the new version of the resource. If an existing file
+ * cannot be replaced by a rename, the contents are copied instead.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class StoreRaw extends Command {
+  /** File to be moved. */
+  private final File source;
+
+  /**
+   * Default constructor.
+   * @param path target path
+   * @param src file to be moved
+   */
+  public StoreRaw(final String path, final File src) {
+    super(Perm.WRITE, true, path);
+    source = src;
+  }
+
+  @Override
+  protected boolean run() {
+    final String path = MetaData.normPath(args[0]);
+    if(path == null || path.isEmpty() || path.endsWith(".")) {
+      return error(NAME_INVALID_X, args[0]);
+    }
+    final Data data = context.data();
+    final IOFile bin = data.meta.binary(path);
+    if(bin == null || bin.isDir()) return error(NAME_INVALID_X, path);
+
+    final File target = bin.file();
+    final File dir = target.getParentFile();
+    if(!dir.exists() && !dir.mkdirs()) return error(NAME_INVALID_X, path);
+
+    if(!data.startUpdate()) return error(DB_PINNED_X, data.meta.name);
+    try {
+      // existing files cannot be replaced by a rename on all platforms:
+      // in this case, the contents are copied
+      if(!source.renameTo(target)) copy(source, target);
+      // update timestamp of the database
+      data.meta.time = Math.max(System.currentTimeMillis(), data.meta.time + 1);
+      data.meta.dirty = true;
+      return true;
+    } catch(final IOException ex) {
+      return error("Resource \"%\" could not be stored: %", path, Util.message(ex));
+    } finally {
+      data.finishUpdate();
+    }
+  }
+
+  /**
+   * Copies the contents of a file.
+   * @param src source file
+   * @param trg target file
+   * @throws IOException I/O exception
+   */
+  private static void copy(final File src, final File trg) throws IOException {
+    final InputStream in = new FileInputStream(src);
+    try {
+      final OutputStream out = new FileOutputStream(trg);
+      try {
+        final byte[] buffer = new byte[IO.BLOCKSIZE];
+        for(int n; (n = in.read(buffer)) != -1;) out.write(buffer, 0, n);
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  @Override
+  public boolean databases(final StringList db) {
+    // write lock on the currently opened database
+    db.add("");
+    return true;
+  }
+}
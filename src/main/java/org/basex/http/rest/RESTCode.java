@@ -9,10 +9,9 @@ import java.util.Map.Entry;
 
 import org.basex.core.*;
 import org.basex.core.cmd.*;
-import org.basex.core.cmd.Set;
 import org.basex.http.*;
+import org.basex.http.ResourceCache.Resource;
 import org.basex.io.serial.*;
-import org.basex.server.*;
 import org.basex.util.*;
 
 /**
@@ -22,6 +21,9 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public abstract class RESTCode {
+  /** Resource cache. */
+  private static final ResourceCache RESOURCES = new ResourceCache();
+
   /**
    * Performs the REST operation.
    * @param http HTTP context
@@ -64,42 +66,26 @@ public abstract class RESTCode {
   }
 
   /**
-   * Checks if any resource with the specified name exists.
+   * Returns meta data on the addressed database resource. The resource is looked up
+   * by its exact path, and results are cached until the database is updated.
    * @param http HTTP context
-   * @return number of documents
+   * @return resource
    * @throws IOException I/O exception
    */
-  protected static boolean exists(final HTTPContext http) throws IOException {
-    final LocalQuery q = http.session().query(_DB_EXISTS.args("$d", "$p"));
-    q.bind("d", http.db());
-    q.bind("p", http.dbpath());
-    return q.execute().equals(Text.TRUE);
-  }
+  static Resource resource(final HTTPContext http) throws IOException {
+    final String db = http.db(), path = http.dbpath();
+    if(path.isEmpty()) return ResourceCache.NONE;
 
-  /**
-   * Checks if the specified path points to a binary resource.
-   * @param http HTTP context
-   * @return result of check
-   * @throws IOException I/O exception
-   */
-  protected static boolean isRaw(final HTTPContext http) throws IOException {
-    final LocalQuery q = http.session().query(_DB_IS_RAW.args("$d", "$p"));
-    q.bind("d", http.db());
-    q.bind("p", http.dbpath());
-    return q.execute().equals(Text.TRUE);
-  }
+    // the stamp must be computed before the resource is looked up
+    final long stamp = ResourceCache.stamp(http.context(), db);
+    Resource res = RESOURCES.get(db, path, stamp);
+    if(res != null) return res;
 
-  /**
-   * Returns the content type of a database resource.
-   * @param http HTTP context
-   * @return content type
-   * @throws IOException I/O exception
-   */
-  protected static String contentType(final HTTPContext http) throws IOException {
-    final LocalQuery q = http.session().query(_DB_CONTENT_TYPE.args("$d", "$p"));
-    q.bind("d", http.db());
-    q.bind("p", http.dbpath());
-    return q.execute();
+    final ResourceInfo info = new ResourceInfo(path);
+    http.session().execute(info);
+    res = info.resource();
+    RESOURCES.add(db, path, stamp, res, info.file());
+    return res;
   }
 
   /**
@@ -127,7 +113,7 @@ public abstract class RESTCode {
 
     final String key = param.getKey().toUpperCase(Locale.ENGLISH);
     final boolean found = http.context().prop.get(key) != null;
-    if(found || force) http.session().execute(new Set(key, param.getValue()[0]));
+    if(found || force) http.set(key, param.getValue()[0]);
     return found;
   }
 }
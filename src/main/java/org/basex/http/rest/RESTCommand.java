@@ -34,8 +34,9 @@ public class RESTCommand extends RESTCode {
             ',' + http.serialization;
     http.initResponse(new SerializerProp(sprop));
 
-    // perform command
+    // perform command; session state may be changed by arbitrary commands
     final LocalSession session = http.session();
+    http.discard();
     session.setOutputStream(http.res.getOutputStream());
     session.execute(input);
   }
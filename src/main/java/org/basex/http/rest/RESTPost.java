@@ -9,7 +9,6 @@ import javax.xml.parsers.*;
 import javax.xml.transform.dom.*;
 
 import org.basex.core.*;
-import org.basex.core.cmd.Set;
 import org.basex.http.*;
 import org.basex.io.*;
 import org.basex.io.in.*;
@@ -72,7 +71,7 @@ public class RESTPost extends RESTCode {
       for(final Item it : qp.value()) {
         final String name = value("data(@name)", it, ctx);
         final String value = value("data(@value)", it, ctx);
-        http.session().execute(new Set(name, value));
+        http.set(name, value);
       }
 
       // handle variables
@@ -4,6 +4,7 @@ import static org.basex.io.MimeTypes.*;
 
 import java.io.*;
 
+import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.http.*;
 import org.basex.io.*;
@@ -31,16 +32,16 @@ public class RESTPut extends RESTCode {
     final String ct = http.contentType();
     // choose correct importer
     if(APP_JSON.equals(ct)) {
-      session.execute("set parser json");
+      http.set(Prop.PARSER, "json");
     } else if(APP_JSONML.equals(ct)) {
-      session.execute("set parser json");
-      session.execute("set parseropt jsonml=true");
+      http.set(Prop.PARSER, "json");
+      http.set(Prop.PARSEROPT, "jsonml=true");
     } else if(TEXT_CSV.equals(ct)) {
-      session.execute("set parser csv");
+      http.set(Prop.PARSER, "csv");
     } else if(TEXT_HTML.equals(ct)) {
-      session.execute("set parser html");
+      http.set(Prop.PARSER, "html");
     } else if(ct != null && MimeTypes.isText(ct)) {
-      session.execute("set parser text");
+      http.set(Prop.PARSER, "text");
     } else if(ct != null && !MimeTypes.isXML(ct)) {
       xml = false;
     }
@@ -9,7 +9,6 @@ import java.util.Map.Entry;
 
 import org.basex.core.*;
 import org.basex.core.cmd.*;
-import org.basex.core.cmd.Set;
 import org.basex.http.*;
 import org.basex.io.in.*;
 import org.basex.io.serial.*;
@@ -63,19 +62,19 @@ class RESTQuery extends RESTCode {
       // create main memory instance of the document specified as context node
       final boolean mm = session.execute(
           new Get(Prop.MAINMEM)).split(COLS)[1].equals(TRUE);
-      session.execute(new Set(Prop.MAINMEM, true));
+      http.set(Prop.MAINMEM, true);
       session.create(Util.name(RESTQuery.class), new ArrayInput(item));
-      if(!mm) session.execute(new Set(Prop.MAINMEM, false));
+      if(!mm) http.set(Prop.MAINMEM, false);
     } else {
       // open addressed database
       open(http);
     }
 
     // send serialization options to the server
-    session.execute(new Set(Prop.SERIALIZER, serial(http)));
+    http.set(Prop.SERIALIZER, serial(http));
     session.setOutputStream(http.res.getOutputStream());
     // set base path to correctly resolve local references
-    session.execute(new Set(Prop.QUERYPATH, path));
+    http.set(Prop.QUERYPATH, path);
 
     // create query instance and bind http context
     final Query qu = session.query(in);
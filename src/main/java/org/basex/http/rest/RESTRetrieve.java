@@ -1,16 +1,22 @@
 package org.basex.http.rest;
 
+import static javax.servlet.http.HttpServletResponse.*;
+import static org.basex.http.HTTPText.*;
 import static org.basex.http.rest.RESTText.*;
+import static org.basex.query.func.Function.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
 import java.util.*;
 
+import javax.servlet.http.*;
+
 import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.core.cmd.List;
-import org.basex.core.cmd.Set;
 import org.basex.http.*;
+import org.basex.http.ResourceCache.Resource;
+import org.basex.io.*;
 import org.basex.io.serial.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
@@ -37,9 +43,6 @@ final class RESTRetrieve extends RESTQuery {
 
   @Override
   void run(final HTTPContext http) throws IOException {
-    // open addressed database
-    open(http);
-
     final LocalSession session = http.session();
     if(http.depth() == 0) {
       // list databases
@@ -53,7 +56,19 @@ final class RESTRetrieve extends RESTQuery {
       list(table, el, Q_DATABASE, 1);
       ser.serialize(el);
       ser.close();
-    } else if(!exists(http)) {
+      return;
+    }
+
+    // open addressed database and look up resource
+    final String db = http.db();
+    try {
+      session.execute(new Open(db));
+    } catch(final IOException ex) {
+      HTTPErr.NOT_FOUND_X.thrw(ex);
+    }
+    final Resource res = resource(http);
+
+    if(!res.exists) {
       // list database resources
       final Table table = new Table(session.execute(new List(http.db(), http.dbpath())));
       final String serial = http.serialization;
@@ -67,21 +82,75 @@ final class RESTRetrieve extends RESTQuery {
       list(table, el, Q_RESOURCE, 0);
       ser.serialize(el);
       ser.close();
-    } else if(isRaw(http)) {
+      return;
+    }
+
+    // skip resources that have not been modified
+    final String etag = '"' + HTTPContext.etag(res.modified, res.size) + '"';
+    if(!http.modified(etag, res.modified)) return;
+
+    if(res.raw) {
       // retrieve raw file; prefix user parameters with media type
-      final String ct = SerializerProp.S_MEDIA_TYPE[0] + "=" + contentType(http);
-      http.initResponse(new SerializerProp(ct + ',' + http.serialization));
-      session.setOutputStream(http.res.getOutputStream());
-      session.execute(new Retrieve(http.dbpath()));
+      final String ct = SerializerProp.S_MEDIA_TYPE[0] + "=" + res.type;
+      final SerializerProp sprop = new SerializerProp(ct + ',' + http.serialization);
+      http.initResponse(sprop);
+      http.res.setHeader(ACCEPT_RANGES, BYTES);
+      raw(http, res.size, http.ranges(etag, res.size), HTTPContext.mediaType(sprop));
     } else {
       // retrieve xml file
+      session.execute(new Cs(_DB_OPEN.args(db, http.dbpath())));
       http.initResponse(new SerializerProp(http.serialization));
-      session.execute(new Set(Prop.SERIALIZER, serial(http)));
+      http.set(Prop.SERIALIZER, serial(http));
       session.setOutputStream(http.res.getOutputStream());
       session.query(".").execute();
     }
   }
 
+  /**
+   * Returns a raw file, or the requested byte ranges.
+   * @param http HTTP context
+   * @param size size of the file
+   * @param ranges requested ranges (see {@link HTTPContext#ranges})
+   * @param type media type
+   * @throws IOException I/O exception
+   */
+  private static void raw(final HTTPContext http, final long size, final long[][] ranges,
+      final String type) throws IOException {
+
+    final String path = http.dbpath();
+    final LocalSession session = http.session();
+    final HttpServletResponse res = http.res;
+    if(ranges == null) {
+      // complete file
+      res.setHeader(CONTENT_LENGTH, Long.toString(size));
+      session.execute(new RetrieveRaw(path, res.getOutputStream()));
+    } else if(ranges.length == 0) {
+      res.setHeader(CONTENT_RANGE, BYTES + " */" + size);
+      HTTPErr.RANGE_X.thrw(http.req.getHeader(RANGE));
+    } else if(ranges.length == 1) {
+      // single range
+      final long start = ranges[0][0], end = ranges[0][1];
+      res.setStatus(SC_PARTIAL_CONTENT);
+      res.setHeader(CONTENT_RANGE, BYTES + ' ' + start + '-' + end + '/' + size);
+      res.setHeader(CONTENT_LENGTH, Long.toString(end - start + 1));
+      session.execute(new RetrieveRaw(path, res.getOutputStream(), start, end - start + 1));
+    } else {
+      // multiple ranges
+      final String boundary = Long.toHexString(System.nanoTime());
+      res.setStatus(SC_PARTIAL_CONTENT);
+      res.setContentType(MULTIPART_BYTERANGES + boundary);
+      final OutputStream out = res.getOutputStream();
+      for(final long[] range : ranges) {
+        final long start = range[0], end = range[1];
+        out.write(token("\r\n--" + boundary + "\r\n" +
+            MimeTypes.CONTENT_TYPE + ": " + type + "\r\n" +
+            CONTENT_RANGE + ": " + BYTES + ' ' + start + '-' + end + '/' + size + "\r\n\r\n"));
+        session.execute(new RetrieveRaw(path, out, start, end - start + 1));
+      }
+      out.write(token("\r\n--" + boundary + "--\r\n"));
+    }
+  }
+
   /**
    * Lists the table contents.
    * @param table table reference
@@ -4,6 +4,7 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.core.*;
 import org.basex.http.*;
@@ -17,6 +18,27 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public class RESTRun extends RESTQuery {
+  /** Option: maximum number of cached query files. */
+  private static final String RUNCACHE = "runcache";
+  /** Maximum number of cached query files. */
+  private static final int MAX = (int) HTTPContext.option(RUNCACHE, 64);
+  /** Number of requests that have been served from cached query files. */
+  private static final AtomicLong HITS = new AtomicLong();
+  /** Number of requests that needed to read the query file from disk. */
+  private static final AtomicLong MISSES = new AtomicLong();
+  /** Number of query files that have been evicted from the cache. */
+  private static final AtomicLong EVICTIONS = new AtomicLong();
+  /** Cached query files, indexed by paths and ordered by their last access. */
+  private static final LinkedHashMap<String, Source> CACHE =
+    new LinkedHashMap<String, Source>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Source> eldest) {
+        final boolean rm = size() > MAX;
+        if(rm) EVICTIONS.incrementAndGet();
+        return rm;
+      }
+    };
+
   /**
    * Constructor.
    * @param in input file to be executed
@@ -38,6 +60,66 @@ public class RESTRun extends RESTQuery {
       HTTPErr.NOT_FOUND_X.thrw(Util.info(RES_NOT_FOUND_X, input));
 
     // perform query
-    query(io.string(), http, io.path());
+    query(source(io), http, io.path());
+  }
+
+  /**
+   * Returns the contents of a query file. Contents are cached until the file is modified.
+   * @param io query file
+   * @return query string
+   * @throws IOException I/O exception
+   */
+  private static String source(final IOFile io) throws IOException {
+    final String path = io.path();
+    final long time = io.timeStamp(), length = io.length();
+    synchronized(CACHE) {
+      final Source src = CACHE.get(path);
+      if(src != null && src.time == time && src.length == length) {
+        HITS.incrementAndGet();
+        return src.query;
+      }
+    }
+    final String query = io.string();
+    MISSES.incrementAndGet();
+    if(MAX > 0) {
+      synchronized(CACHE) {
+        CACHE.put(path, new Source(query, time, length));
+      }
+    }
+    Util.debug("REST: query files: %", cacheInfo());
+    return query;
+  }
+
+  /**
+   * Returns statistics on the query file cache.
+   * @return info string
+   */
+  static String cacheInfo() {
+    synchronized(CACHE) {
+      return Util.info("% files; % hits, % misses, % evictions", CACHE.size(),
+          HITS.get(), MISSES.get(), EVICTIONS.get());
+    }
+  }
+
+  /** Cached query file. */
+  private static final class Source {
+    /** Query string. */
+    final String query;
+    /** Timestamp of the file. */
+    final long time;
+    /** Size of the file. */
+    final long length;
+
+    /**
+     * Constructor.
+     * @param q query string
+     * @param t timestamp
+     * @param l file size
+     */
+    Source(final String q, final long t, final long l) {
+      query = q;
+      time = t;
+      length = l;
+    }
   }
 }
@@ -199,11 +199,29 @@ final class RestXqFunction implements Comparable<RestXqFunction> {
    */
   boolean matches(final HTTPContext http, final QNm err) {
     // check method, consumed and produced media type, and path or error
-    return methods.contains(http.method) && consumes(http) && produces(http) &&
+    return methods.contains(http.method) && accepts(http) &&
         (err == null ? path != null && path.matches(http) :
           error != null && error.matches(err));
   }
 
+  /**
+   * Checks if the consumed and produced media types of an HTTP request match
+   * the constraints of this function.
+   * @param http http context
+   * @return result of check
+   */
+  boolean accepts(final HTTPContext http) {
+    return consumes(http) && produces(http);
+  }
+
+  /**
+   * Checks if this function restricts the consumed or produced media types.
+   * @return result of check
+   */
+  boolean restricted() {
+    return !consumes.isEmpty() || !produces.isEmpty();
+  }
+
   /**
    * Binds the annotated variables.
    * @param http http context
@@ -0,0 +1,139 @@
+package org.basex.http.restxq;
+
+import static org.basex.http.restxq.RestXqText.*;
+
+import java.util.*;
+
+import org.basex.http.*;
+import org.basex.util.*;
+
+/**
+ * This class indexes the paths of all RESTXQ functions. For each HTTP method, a trie
+ * is built over the path segments, in which literal segments are hashed and templates
+ * are represented by a single wildcard branch. The functions that match a request can
+ * thus be found in time proportional to the path depth.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class RestXqIndex {
+  /** Root nodes, indexed by HTTP methods. */
+  private final EnumMap<HTTPMethod, Node> roots =
+      new EnumMap<HTTPMethod, Node>(HTTPMethod.class);
+  /** Functions with error annotations. */
+  private final ArrayList<RestXqFunction> errors = new ArrayList<RestXqFunction>();
+
+  /**
+   * Constructor.
+   * @param modules modules to be indexed
+   */
+  RestXqIndex(final Collection<RestXqModule> modules) {
+    for(final RestXqModule mod : modules) {
+      for(final RestXqFunction rxf : mod.functions()) {
+        if(rxf.error != null) errors.add(rxf);
+        if(rxf.path == null) continue;
+        for(final HTTPMethod m : rxf.methods) {
+          Node root = roots.get(m);
+          if(root == null) {
+            root = new Node();
+            roots.put(m, root);
+          }
+          root.add(rxf, 0);
+        }
+      }
+    }
+    // report functions that will always conflict with each other
+    for(final Node root : roots.values()) root.check();
+  }
+
+  /**
+   * Returns all functions with paths matching the current request, ordered by their
+   * specifity. Consumed and produced media types are not checked.
+   * @param http HTTP context
+   * @return functions
+   */
+  ArrayList<RestXqFunction> find(final HTTPContext http) {
+    final ArrayList<RestXqFunction> list = new ArrayList<RestXqFunction>();
+    final Node root = roots.get(http.method);
+    if(root != null) root.find(http, 0, list);
+    return list;
+  }
+
+  /**
+   * Returns all functions with error annotations.
+   * @return functions
+   */
+  ArrayList<RestXqFunction> errors() {
+    return errors;
+  }
+
+  /** Single node of the path trie. */
+  private static final class Node {
+    /** Child nodes for literal segments. */
+    private final HashMap<String, Node> children = new HashMap<String, Node>();
+    /** Child node for templates. */
+    private Node template;
+    /** Functions with paths ending at this node. */
+    private final ArrayList<RestXqFunction> functions = new ArrayList<RestXqFunction>();
+
+    /**
+     * Adds a function.
+     * @param rxf function
+     * @param s offset of current segment
+     */
+    void add(final RestXqFunction rxf, final int s) {
+      final RestXqPath path = rxf.path;
+      if(s == path.size) {
+        functions.add(rxf);
+      } else if(path.isTemplate(s)) {
+        if(template == null) template = new Node();
+        template.add(rxf, s + 1);
+      } else {
+        final String seg = path.segment[s];
+        Node node = children.get(seg);
+        if(node == null) {
+          node = new Node();
+          children.put(seg, node);
+        }
+        node.add(rxf, s + 1);
+      }
+    }
+
+    /**
+     * Adds all functions that match the request path. Literal segments are checked
+     * before templates, so the functions will be ordered by their specifity.
+     * @param http HTTP context
+     * @param s offset of current segment
+     * @param list list of found functions
+     */
+    void find(final HTTPContext http, final int s, final ArrayList<RestXqFunction> list) {
+      if(s == http.depth()) {
+        list.addAll(functions);
+      } else {
+        final Node node = children.get(http.segment(s));
+        if(node != null) node.find(http, s + 1, list);
+        if(template != null) template.find(http, s + 1, list);
+      }
+    }
+
+    /**
+     * Reports paths that are assigned to several functions without media type
+     * restrictions, as such functions can never be distinguished.
+     */
+    void check() {
+      final ArrayList<RestXqFunction> list = new ArrayList<RestXqFunction>();
+      for(final RestXqFunction rxf : functions) {
+        if(!rxf.restricted()) list.add(rxf);
+      }
+      if(list.size() > 1) {
+        final TokenBuilder tb = new TokenBuilder();
+        for(final RestXqFunction rxf : list) {
+          tb.add(Prop.NL).add(rxf.function.info.toString());
+        }
+        Util.errln(Util.info(PATH_CONFLICT, list.get(0).path, tb));
+      }
+      for(final Node node : children.values()) node.check();
+      if(template != null) template.check();
+    }
+  }
+}
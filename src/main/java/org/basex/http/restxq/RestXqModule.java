@@ -25,7 +25,9 @@ final class RestXqModule {
   /** Main module flag. */
   private final boolean main;
   /** Parsing timestamp. */
-  private long time;
+  private final long time;
+  /** Module source (assigned when the module is parsed). */
+  private volatile byte[] content;
 
   /**
    * Constructor.
@@ -71,13 +73,6 @@ final class RestXqModule {
     return time == file.timeStamp();
   }
 
-  /**
-   * Updates the timestamp.
-   */
-  void touch() {
-    time = file.timeStamp();
-  }
-
   /**
    * Returns all functions.
    * @return functions
@@ -117,20 +112,28 @@ final class RestXqModule {
 
   /**
    * Parses the module and returns the query context.
+   * The module source is read only once: module instances are replaced as soon as the
+   * underlying file has been modified, so the cached source will never be outdated.
+   * The source is parsed for each request, as query contexts cannot be shared.
    * @param http http context
    * @return query context
    * @throws QueryException query exception
    */
   private QueryContext parseModule(final HTTPContext http) throws QueryException {
-    final QueryContext qc = new QueryContext(http.context());
-    try {
-      final String cont = string(file.read());
-      final String path = file.path();
-      if(main) qc.parseMain(cont, path);
-      else qc.parseLibrary(cont, path);
-      return qc;
-    } catch(final IOException ex) {
-      throw IOERR.thrw(null, ex);
+    byte[] cont = content;
+    if(cont == null) {
+      try {
+        cont = file.read();
+      } catch(final IOException ex) {
+        throw IOERR.thrw(null, ex);
+      }
+      content = cont;
     }
+
+    final QueryContext qc = new QueryContext(http.context());
+    final String path = file.path();
+    if(main) qc.parseMain(string(cont), path);
+    else qc.parseLibrary(string(cont), path);
+    return qc;
   }
 }
@@ -4,6 +4,7 @@ import static org.basex.http.restxq.RestXqText.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.locks.*;
 
 import org.basex.core.*;
 import org.basex.http.*;
@@ -15,6 +16,13 @@ import org.basex.util.*;
 
 /**
  * This class caches RESTXQ modules found in the HTTP root directory.
+ * The request path works on an immutable snapshot of the parsed modules, which is
+ * replaced as a whole if the module directory has been modified. The directory is
+ * checked at most once within the polling interval, which can be assigned via the
+ * {@code restxqpoll} option. By default, every request triggers a check. Only one
+ * thread checks the directory at a time: all other requests are served from the
+ * current snapshot, unless the modules have not been parsed yet.
+ * Whenever the modules change, a new path index is built (see {@link RestXqIndex}).
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -23,8 +31,17 @@ public final class RestXqModules {
   /** Class instance. */
   private static final RestXqModules INSTANCE = new RestXqModules();
 
-  /** Module cache. */
-  private HashMap<String, RestXqModule> modules = new HashMap<String, RestXqModule>();
+  /** Update lock. */
+  private final ReentrantLock lock = new ReentrantLock();
+  /** Module cache (immutable; will be replaced when modules change). */
+  private volatile HashMap<String, RestXqModule> modules =
+      new HashMap<String, RestXqModule>();
+  /** Path index (will be replaced along with the module cache). */
+  private volatile RestXqIndex index = new RestXqIndex(modules.values());
+  /** Time of the next check for modified modules. */
+  private volatile long next;
+  /** Initialization flag. */
+  private volatile boolean init;
   /** RESTXQ path. */
   private IOFile restxq;
   /** Private constructor. */
@@ -58,20 +75,25 @@ public final class RestXqModules {
   RestXqFunction find(final HTTPContext http, final QNm error) throws QueryException {
     cache(http);
     // collect all functions
+    final RestXqIndex ri = index;
     final ArrayList<RestXqFunction> list = new ArrayList<RestXqFunction>();
-    for(final RestXqModule mod : modules.values()) {
-      for(final RestXqFunction rxf : mod.functions()) {
+    if(error == null) {
+      // functions are returned by the index in the order of their specifity
+      for(final RestXqFunction rxf : ri.find(http)) {
+        if(rxf.accepts(http)) list.add(rxf);
+      }
+    } else {
+      for(final RestXqFunction rxf : ri.errors()) {
         if(rxf.matches(http, error)) list.add(rxf);
       }
+      // sort by specifity
+      Collections.sort(list);
     }
     // no path matches
     if(list.isEmpty()) return null;
     // choose most appropriate function
-    RestXqFunction first = list.get(0);
+    final RestXqFunction first = list.get(0);
     if(list.size() > 1) {
-      // sort by specifity
-      Collections.sort(list);
-      first = list.get(0);
       // disallow more than one path with the same specifity
       if(first.compareTo(list.get(1)) == 0) {
         final TokenBuilder tb = new TokenBuilder();
@@ -92,27 +114,51 @@ public final class RestXqModules {
    * @param http http context
    * @throws QueryException query exception
    */
-  private synchronized void cache(final HTTPContext http) throws QueryException {
-    // initialize RESTXQ directory (may be relative against WEBPATH)
-    if(restxq == null) {
-      final File fl = new File(http.context().mprop.get(MainProp.RESTXQPATH));
-      restxq = fl.isAbsolute() ? new IOFile(fl) :
-        new IOFile(http.context().mprop.get(MainProp.WEBPATH), fl.getPath());
+  private void cache(final HTTPContext http) throws QueryException {
+    // skip check if polling interval has not elapsed yet
+    if(System.currentTimeMillis() < next) return;
+
+    // if another thread is already updating the modules, the current snapshot will
+    // be used; requests wait for the initial snapshot
+    if(init) {
+      if(!lock.tryLock()) return;
+    } else {
+      lock.lock();
+    }
+    try {
+      if(System.currentTimeMillis() < next) return;
+      final long poll = HTTPContext.option(HTTPText.RESTXQPOLL, 0);
+      // initialize RESTXQ directory (may be relative against WEBPATH)
+      if(restxq == null) {
+        final File fl = new File(http.context().mprop.get(MainProp.RESTXQPATH));
+        restxq = fl.isAbsolute() ? new IOFile(fl) :
+          new IOFile(http.context().mprop.get(MainProp.WEBPATH), fl.getPath());
+      }
+      // create new cache, replace old one
+      final HashMap<String, RestXqModule> cache = new HashMap<String, RestXqModule>();
+      cache(http, restxq, cache);
+      // rebuild path index if modules have changed
+      if(!cache.equals(modules)) {
+        index = new RestXqIndex(cache.values());
+        modules = cache;
+      }
+      init = true;
+      if(poll > 0) next = System.currentTimeMillis() + poll;
+    } finally {
+      lock.unlock();
     }
-    // create new cache
-    final HashMap<String, RestXqModule> cache = new HashMap<String, RestXqModule>();
-    cache(http, restxq, cache);
-    modules = cache;
   }
 
   /**
    * Parses the specified path for RESTXQ modules and caches new entries.
+   * Modules that have been modified are replaced with new instances, as
+   * the old instances may still be accessed by other requests.
    * @param root root path
    * @param http http context
    * @param cache cached modules
    * @throws QueryException query exception
    */
-  private synchronized void cache(final HTTPContext http, final IOFile root,
+  private void cache(final HTTPContext http, final IOFile root,
       final HashMap<String, RestXqModule> cache) throws QueryException {
 
     for(final IOFile file : root.children()) {
@@ -125,19 +171,12 @@ public final class RestXqModules {
           // all files with .xqm suffix will be parsed for RESTXQ annotations
           RestXqModule module = modules.get(path);
 
-          boolean parsed = false;
-          if(module != null) {
-            // check if module has been modified
-            parsed = module.uptodate();
-          } else {
-            // create new module
-            module = new RestXqModule(file, main);
-          }
+          // check if module has been modified
+          final boolean parsed = module != null && module.uptodate();
+          // create new module
+          if(!parsed) module = new RestXqModule(file, main);
           // add module if it has been parsed, and if it contains annotations
-          if(parsed || module.parse(http)) {
-            module.touch();
-            cache.put(path, module);
-          }
+          if(parsed || module.parse(http)) cache.put(path, module);
         }
       }
     }
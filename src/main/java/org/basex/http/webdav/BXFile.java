@@ -5,6 +5,7 @@ import static org.basex.http.webdav.impl.Utils.*;
 import java.io.*;
 import java.util.*;
 
+import org.basex.http.HTTPContext;
 import org.basex.http.webdav.impl.ResourceMetaData;
 import org.basex.http.webdav.impl.WebDAVService;
 
@@ -33,6 +34,12 @@ public final class BXFile extends BXAbstractResource implements FileResource {
     return meta.size;
   }
 
+  @Override
+  public String getUniqueId() {
+    return meta.mdate == null ? null :
+      HTTPContext.etag(meta.mdate.getTime(), meta.size == null ? 0 : meta.size);
+  }
+
   @Override
   public Date getCreateDate() {
     return null;
@@ -58,14 +65,38 @@ public final class BXFile extends BXAbstractResource implements FileResource {
   public void sendContent(final OutputStream out, final Range range,
       final Map<String, String> params, final String contentType)
       throws IOException, BadRequestException {
+    final long[] rng = range == null || meta.size == null ? null : range(range, meta.size);
     new BXCode<Object>(this) {
       @Override
       public void run() throws IOException {
-        service.retrieve(meta.db, meta.path, meta.raw, out);
+        if(rng == null) {
+          service.retrieve(meta.db, meta.path, meta.raw, out);
+        } else {
+          service.retrieve(meta.db, meta.path, true, out, rng[0], rng[1] - rng[0] + 1);
+        }
       }
     }.eval();
   }
 
+  /**
+   * Returns the inclusive start and end positions of a byte range of a raw file.
+   * As in {@link HTTPContext#ranges}, ranges that cannot be satisfied are rejected.
+   * @param range requested range
+   * @param size size of the file
+   * @return start and end positions
+   * @throws BadRequestException bad request exception
+   */
+  private long[] range(final Range range, final long size) throws BadRequestException {
+    final Long s = range.getStart(), f = range.getFinish();
+    final long start = s == null ? Math.max(0, size - f) : s;
+    final long end = s == null || f == null ? size - 1 : Math.min(f, size - 1);
+    if(start >= size || start > end) {
+      throw new BadRequestException(this, "Requested range cannot be satisfied: " +
+        (s == null ? "" : s) + '-' + (f == null ? "" : f) + '.');
+    }
+    return new long[] { start, end };
+  }
+
   @Override
   protected void copyToRoot(final String name) throws IOException {
     // document is copied to the root: create new database with it
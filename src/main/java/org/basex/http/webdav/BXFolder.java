@@ -102,7 +102,7 @@ public class BXFolder extends BXAbstractResource implements FolderResource,
     return new BXCode<BXAbstractResource>(this) {
       @Override
       public BXAbstractResource get() throws IOException {
-        return service.createFile(meta.db, meta.path, newName, input);
+        return service.createFile(meta.db, meta.path, newName, input, contentType);
       }
     }.eval();
   }
@@ -23,22 +23,29 @@ import com.bradmcevoy.http.*;
  */
 public final class BXResourceFactory implements ResourceFactory,
   ResourceMetaDataFactory<BXAbstractResource> {
-  /** HTTP Context. */
-  private final HTTPContext http;
-  /** WebDAV service. */
-  private final WebDAVService<BXAbstractResource> service;
+  /** HTTP context and WebDAV service of the request processed by the current thread. */
+  private final ThreadLocal<Scope> scope = new ThreadLocal<Scope>();
 
   /**
-   * Constructor.
-   * @param ht http context
+   * Binds the specified HTTP context to the current thread.
+   * @param http HTTP context
    */
-  BXResourceFactory(final HTTPContext ht) {
-    http = ht;
-    service = new WebDAVService<BXAbstractResource>(this, http);
+  void bind(final HTTPContext http) {
+    scope.set(new Scope(http, new WebDAVService<BXAbstractResource>(this, http)));
+  }
+
+  /**
+   * Releases the HTTP context bound to the current thread.
+   */
+  void unbind() {
+    scope.remove();
   }
 
   @Override
   public Resource getResource(final String host, final String dbpath) {
+    final Scope s = scope.get();
+    final HTTPContext http = s.http;
+    final WebDAVService<BXAbstractResource> service = s.service;
     final Auth a = HttpManager.request().getAuthorization();
     if(a != null) http.credentials(a.getUser(), a.getPassword());
 
@@ -80,4 +87,22 @@ public final class BXResourceFactory implements ResourceFactory,
       final ResourceMetaData d) {
     return new BXDatabase(d, s);
   }
+
+  /** Request scope. */
+  private static final class Scope {
+    /** HTTP context. */
+    final HTTPContext http;
+    /** WebDAV service. */
+    final WebDAVService<BXAbstractResource> service;
+
+    /**
+     * Constructor.
+     * @param h HTTP context
+     * @param s WebDAV service
+     */
+    Scope(final HTTPContext h, final WebDAVService<BXAbstractResource> s) {
+      http = h;
+      service = s;
+    }
+  }
 }
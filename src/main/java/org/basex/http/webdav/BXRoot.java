@@ -85,7 +85,7 @@ public final class BXRoot extends BXFolder {
     return new BXCode<BXAbstractResource>(this) {
       @Override
       public BXAbstractResource get() throws IOException {
-        return service.createFile(name, input);
+        return service.createFile(name, input, contentType);
       }
     }.eval();
   }
@@ -13,15 +13,21 @@ import com.bradmcevoy.http.*;
  * @author Dimitar Popov
  */
 public final class WebDAVServlet extends BaseXServlet {
+  /** Resource factory, shared by all requests. */
+  private final BXResourceFactory factory = new BXResourceFactory();
+  /** HTTP manager, shared by all requests. */
+  private final HttpManager manager = new HttpManager(factory);
+
   @Override
   protected void run(final HTTPContext http) throws IOException {
-    final HttpManager manager = new HttpManager(new BXResourceFactory(http));
     final Request request = new BXServletRequest(http.req);
     final Response response = new BXServletResponse(http.res);
 
+    factory.bind(http);
     try {
       manager.process(request, response);
     } finally {
+      factory.unbind();
       http.res.getOutputStream().flush();
       http.res.flushBuffer();
     }
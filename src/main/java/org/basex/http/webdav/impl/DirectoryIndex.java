@@ -0,0 +1,252 @@
+package org.basex.http.webdav.impl;
+
+import static org.basex.http.webdav.impl.Utils.SEP;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Directory index of a database. The index stores the folders of a database
+ * and their direct children, so that folders can be listed without traversing
+ * all descendant resources. An index is tagged with the stamp of the database
+ * that was captured before the index was built (see
+ * {@link org.basex.http.ResourceCache#stamp}); it is only valid as long as the
+ * stamp does not change. Indexes of at most {@link #MAX} databases are kept.
+ * @author BaseX Team 2005-13, BSD License
+ * @author Dimitar Popov
+ */
+final class DirectoryIndex {
+  /** Maximum number of indexed databases. */
+  private static final int MAX = 32;
+  /** Directory indexes, indexed by database names. */
+  private static final LinkedHashMap<String, DirectoryIndex> INDEXES = lru();
+  /** Stamps of the last listings of databases without index. */
+  private static final LinkedHashMap<String, Long> LISTED = lru();
+
+  /** Root folder. */
+  private final Folder root = new Folder();
+  /** Stamp of the database. */
+  private long stamp;
+
+  /**
+   * Returns the index of the specified database if it is up-to-date.
+   * Outdated indexes are discarded.
+   * @param db database
+   * @param st current stamp of the database
+   * @return index or {@code null}
+   */
+  static synchronized DirectoryIndex get(final String db, final long st) {
+    final DirectoryIndex ix = INDEXES.get(db);
+    if(ix == null || ix.stamp == st && st != 0) return ix;
+    INDEXES.remove(db);
+    return null;
+  }
+
+  /**
+   * Registers the index of the specified database.
+   * @param db database
+   * @param ix index
+   * @param st stamp of the database, captured before the index was built
+   */
+  static synchronized void put(final String db, final DirectoryIndex ix, final long st) {
+    if(st == 0) return;
+    ix.stamp = st;
+    INDEXES.put(db, ix);
+  }
+
+  /**
+   * Checks if the database has not been changed since its last listing.
+   * If this is the case, it is worth building a complete index.
+   * @param db database
+   * @param st current stamp of the database
+   * @return result of check
+   */
+  static synchronized boolean stable(final String db, final long st) {
+    final Long l = LISTED.put(db, st);
+    return l != null && l == st && st != 0;
+  }
+
+  /**
+   * Discards the index of the specified database.
+   * @param db database
+   */
+  static synchronized void drop(final String db) {
+    INDEXES.remove(db);
+    LISTED.remove(db);
+  }
+
+  /**
+   * Adds a resource.
+   * @param path resource path
+   * @param raw raw flag
+   * @param ctype content type
+   * @param size size of raw files
+   * @param mod modification time
+   */
+  synchronized void add(final String path, final boolean raw, final String ctype,
+      final Long size, final long mod) {
+    final String[] segments = segments(path);
+    if(segments.length == 0) return;
+    Folder f = root;
+    final int l = segments.length - 1;
+    for(int s = 0; s < l; s++) f = f.folder(segments[s], true);
+    f.files.put(segments[l], new File(raw, ctype, size, mod));
+  }
+
+  /**
+   * Checks if a file or folder with the specified path exists.
+   * @param path path
+   * @return result of check
+   */
+  synchronized boolean exists(final String path) {
+    final String[] segments = segments(path);
+    if(segments.length == 0) return !root.isEmpty();
+    Folder f = root;
+    final int l = segments.length - 1;
+    for(int s = 0; s < l; s++) {
+      f = f.folder(segments[s], false);
+      if(f == null) return false;
+    }
+    final String name = segments[l];
+    return f.files.containsKey(name) || f.folders.containsKey(name);
+  }
+
+  /**
+   * Returns the meta data of a resource.
+   * @param db database
+   * @param path resource path
+   * @return meta data of a file, {@link MetaDataCache#FOLDER} or
+   *   {@link MetaDataCache#NONE}
+   */
+  synchronized ResourceMetaData resource(final String db, final String path) {
+    final String[] segments = segments(path);
+    if(segments.length == 0) return root.isEmpty() ? MetaDataCache.NONE : MetaDataCache.FOLDER;
+    Folder f = root;
+    final int l = segments.length - 1;
+    for(int s = 0; s < l; s++) {
+      f = f.folder(segments[s], false);
+      if(f == null) return MetaDataCache.NONE;
+    }
+    final String name = segments[l];
+    final File file = f.files.get(name);
+    if(file != null) return new ResourceMetaData(db, path, file.mod, file.raw,
+        file.ctype, file.size);
+    return f.folders.containsKey(name) ? MetaDataCache.FOLDER : MetaDataCache.NONE;
+  }
+
+  /**
+   * Lists the direct children of a folder.
+   * @param db database
+   * @param path folder path
+   * @param dummy name of dummy files (will be skipped)
+   * @param mod modification time of folders
+   * @return resource meta data
+   */
+  synchronized List<ResourceMetaData> children(final String db, final String path,
+      final String dummy, final long mod) {
+    final List<ResourceMetaData> list = new ArrayList<ResourceMetaData>();
+    Folder f = root;
+    for(final String s : segments(path)) {
+      f = f.folder(s, false);
+      if(f == null) return list;
+    }
+    for(final Map.Entry<String, Folder> e : f.folders.entrySet()) {
+      list.add(new ResourceMetaData(db, path + SEP + e.getKey(), mod));
+    }
+    for(final Map.Entry<String, File> e : f.files.entrySet()) {
+      final String name = e.getKey();
+      if(name.equals(dummy)) continue;
+      final File file = e.getValue();
+      list.add(new ResourceMetaData(db, path + SEP + name, file.mod, file.raw,
+          file.ctype, file.size));
+    }
+    return list;
+  }
+
+  /**
+   * Creates a map that discards the least recently used entries.
+   * @param <V> value type
+   * @return map
+   */
+  private static <V> LinkedHashMap<String, V> lru() {
+    return new LinkedHashMap<String, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+        return size() > MAX;
+      }
+    };
+  }
+
+  /**
+   * Returns the segments of a path.
+   * @param path path
+   * @return segments
+   */
+  private static String[] segments(final String path) {
+    final ArrayList<String> list = new ArrayList<String>();
+    for(final String s : path.split(String.valueOf(SEP))) {
+      if(!s.isEmpty()) list.add(s);
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  /** Folder entry. */
+  private static final class Folder {
+    /** Child folders. */
+    final TreeMap<String, Folder> folders = new TreeMap<String, Folder>();
+    /** Child files. */
+    final TreeMap<String, File> files = new TreeMap<String, File>();
+
+    /**
+     * Returns a child folder.
+     * @param name name of folder
+     * @param create create folder if it does not exist
+     * @return folder, or {@code null}
+     */
+    Folder folder(final String name, final boolean create) {
+      Folder f = folders.get(name);
+      if(f == null && create) {
+        f = new Folder();
+        folders.put(name, f);
+      }
+      return f;
+    }
+
+    /**
+     * Checks if the folder has no children.
+     * @return result of check
+     */
+    boolean isEmpty() {
+      return files.isEmpty() && folders.isEmpty();
+    }
+  }
+
+  /** File entry. */
+  private static final class File {
+    /** Raw flag. */
+    final boolean raw;
+    /** Content type. */
+    final String ctype;
+    /** Size of raw files. */
+    final Long size;
+    /** Modification time. */
+    final long mod;
+
+    /**
+     * Constructor.
+     * @param r raw flag
+     * @param c content type
+     * @param s size
+     * @param m modification time
+     */
+    File(final boolean r, final String c, final Long s, final long m) {
+      raw = r;
+      ctype = c;
+      size = s;
+      mod = m;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.basex.http.webdav.impl;
+
+import java.util.HashMap;
+
+/**
+ * Cache for the meta data of database files. Entries are stored per database
+ * and are valid as long as the stamp of the database does not change (see
+ * {@link org.basex.http.ResourceCache#stamp}). Folders and non-existing
+ * resources are not cached, as they may be affected by any resource of
+ * the database.
+ * @author BaseX Team 2005-13, BSD License
+ * @author Dimitar Popov
+ */
+final class MetaDataCache {
+  /** Marker for folders. */
+  static final ResourceMetaData FOLDER = new ResourceMetaData();
+  /** Marker for non-existing resources. */
+  static final ResourceMetaData NONE = new ResourceMetaData();
+  /** Maximum number of cached resources per database. */
+  private static final int MAX = 4096;
+
+  /** Cached entries, indexed by database names. */
+  private static final HashMap<String, MetaDataCache> CACHES =
+      new HashMap<String, MetaDataCache>();
+
+  /** Resources, indexed by paths. */
+  private final HashMap<String, ResourceMetaData> resources =
+      new HashMap<String, ResourceMetaData>();
+  /** Stamp of the database. */
+  private final long stamp;
+
+  /**
+   * Constructor.
+   * @param st stamp of the database
+   */
+  private MetaDataCache(final long st) {
+    stamp = st;
+  }
+
+  /**
+   * Returns the cached meta data of a resource.
+   * @param db database
+   * @param path resource path
+   * @param st current stamp of the database
+   * @return meta data, or {@code null}
+   */
+  static synchronized ResourceMetaData get(final String db, final String path,
+      final long st) {
+    final MetaDataCache mc = CACHES.get(db);
+    return mc != null && mc.stamp == st ? mc.resources.get(path) : null;
+  }
+
+  /**
+   * Caches the meta data of a file. Outdated entries of the database are
+   * discarded. Folders and non-existing resources are ignored.
+   * @param db database
+   * @param path resource path
+   * @param st stamp of the database, captured before the meta data was retrieved
+   * @param md meta data, {@link #FOLDER}, or {@link #NONE}
+   */
+  static synchronized void put(final String db, final String path, final long st,
+      final ResourceMetaData md) {
+    if(st == 0 || md == FOLDER || md == NONE) return;
+    MetaDataCache mc = CACHES.get(db);
+    if(mc == null || mc.stamp != st || mc.resources.size() >= MAX) {
+      mc = new MetaDataCache(st);
+      CACHES.put(db, mc);
+    }
+    mc.resources.put(path, md);
+  }
+
+  /**
+   * Discards all entries of the specified database.
+   * @param db database
+   */
+  static synchronized void drop(final String db) {
+    CACHES.remove(db);
+  }
+}
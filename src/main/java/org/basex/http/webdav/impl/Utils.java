@@ -15,6 +15,8 @@ public final class Utils {
   public static final char SEP = '/';
   /** Dummy file for empty folder.*/
   static final String DUMMY = ".empty";
+  /** Prefix of temporary upload files. */
+  static final String UPLOAD = "~upload";
 
   /** Private constructor. */
   private Utils() { }
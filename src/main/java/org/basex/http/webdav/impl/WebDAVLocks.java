@@ -0,0 +1,521 @@
+package org.basex.http.webdav.impl;
+
+import static org.basex.http.webdav.impl.Utils.SEP;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.basex.core.Context;
+import org.basex.io.IO;
+import org.basex.io.IOFile;
+import org.basex.util.Token;
+import org.basex.util.TokenBuilder;
+import org.basex.util.Util;
+
+/**
+ * Table with the WebDAV locks. Locks are indexed by their tokens and paths, and
+ * ordered by their expiration times, so that expired locks can be discarded without
+ * traversing the whole table. All changes are appended to a journal file in the
+ * database directory, which is read when the table is created, and which is compacted
+ * if it contains too many obsolete entries.
+ * @author BaseX Team 2005-13, BSD License
+ * @author Dimitar Popov
+ */
+final class WebDAVLocks {
+  /** Lock table instance. */
+  private static WebDAVLocks instance;
+
+  /** Journal entry: lock. */
+  private static final String LOCK = "L";
+  /** Journal entry: refresh. */
+  private static final String REFRESH = "R";
+  /** Journal entry: unlock. */
+  private static final String UNLOCK = "U";
+  /** Minimum number of journal entries before the journal is compacted. */
+  private static final int COMPACT = 1000;
+
+  /** Locks, indexed by tokens. */
+  private final HashMap<String, Lock> tokens = new HashMap<String, Lock>();
+  /** Locks, indexed by paths. */
+  private final TreeMap<String, List<Lock>> paths = new TreeMap<String, List<Lock>>();
+  /** Locks, ordered by their expiration times. */
+  private final TreeSet<Lock> expiry = new TreeSet<Lock>();
+  /** Journal file. */
+  private final IOFile journal;
+  /** Journal output ({@code null} if the journal cannot be written). */
+  private OutputStream out;
+  /** Number of journal entries. */
+  private int entries;
+
+  /**
+   * Returns the lock table.
+   * @param ctx database context
+   * @return lock table
+   */
+  static synchronized WebDAVLocks get(final Context ctx) {
+    if(instance == null) instance = new WebDAVLocks(
+        ctx.mprop.dbpath(WebDAVLockService.WEBDAV_LOCKS_DB + ".log"));
+    return instance;
+  }
+
+  /**
+   * Constructor.
+   * @param file journal file
+   */
+  private WebDAVLocks(final IOFile file) {
+    journal = file;
+    if(file.exists()) {
+      try {
+        read();
+      } catch(final IOException ex) {
+        Util.errln("WebDAV locks could not be read: %", ex);
+      }
+    }
+    compact();
+  }
+
+  /**
+   * Creates a new lock.
+   * @param path path
+   * @param token lock token
+   * @param scope lock scope
+   * @param type lock type
+   * @param depth lock depth
+   * @param owner lock owner
+   * @param timeout timeout in seconds
+   * @return {@code false} if the lock conflicts with existing locks
+   */
+  synchronized boolean lock(final String path, final String token, final String scope,
+      final String type, final String depth, final String owner, final long timeout) {
+
+    purge();
+    final Lock lock = new Lock(norm(path), token, scope, type, depth, owner, timeout,
+        expiry(timeout));
+    for(final Lock l : related(lock.path)) {
+      if(lock.conflicts(l)) return false;
+    }
+    add(lock);
+    log(LOCK, token, lock.path, scope, type, depth, owner, Long.toString(timeout),
+        Long.toString(lock.expires));
+    return true;
+  }
+
+  /**
+   * Renews the lock with the given token.
+   * @param token lock token
+   */
+  synchronized void refresh(final String token) {
+    purge();
+    final Lock lock = tokens.get(token);
+    if(lock == null) return;
+    expiry.remove(lock);
+    lock.expires = expiry(lock.timeout);
+    expiry.add(lock);
+    log(REFRESH, token, Long.toString(lock.expires));
+  }
+
+  /**
+   * Releases the lock with the given token.
+   * @param token lock token
+   */
+  synchronized void unlock(final String token) {
+    purge();
+    if(remove(token)) log(UNLOCK, token);
+  }
+
+  /**
+   * Returns the lock with the given token.
+   * @param token lock token
+   * @return lock info, or {@code null}
+   */
+  synchronized String info(final String token) {
+    purge();
+    final Lock lock = tokens.get(token);
+    return lock == null ? null : lock.info();
+  }
+
+  /**
+   * Returns the first active lock that applies to the given path.
+   * @param path path
+   * @return lock info, or {@code null}
+   */
+  synchronized String locks(final String path) {
+    purge();
+    final String p = norm(path);
+    for(final Lock l : related(p)) {
+      if(l.covers(p)) return l.info();
+    }
+    return null;
+  }
+
+  /**
+   * Checks if the given path, or any of its descendants, is exclusively locked
+   * by another owner.
+   * @param path path
+   * @param owner owner
+   * @return result of check
+   */
+  synchronized boolean conflicts(final String path, final String owner) {
+    purge();
+    final Lock lock = new Lock(norm(path), null, "exclusive", null, "infinity", owner,
+        0, 0);
+    for(final Lock l : related(lock.path)) {
+      if(lock.conflicts(l)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns all locks on the given path, its ancestors and its descendants.
+   * @param path normalized path
+   * @return locks
+   */
+  private List<Lock> related(final String path) {
+    final List<Lock> list = new ArrayList<Lock>();
+    // ancestors and path
+    for(int i = path.indexOf(SEP); i != -1; i = path.indexOf(SEP, i + 1)) {
+      final List<Lock> l = paths.get(path.substring(0, i));
+      if(l != null) list.addAll(l);
+    }
+    final List<Lock> l = paths.get(path);
+    if(l != null) list.addAll(l);
+    // descendants
+    final String prefix = path + SEP;
+    final String max = prefix + Character.MAX_VALUE;
+    for(final List<Lock> locks : paths.subMap(prefix, max).values()) list.addAll(locks);
+    return list;
+  }
+
+  /**
+   * Adds a lock to the indexes.
+   * @param lock lock
+   */
+  private void add(final Lock lock) {
+    tokens.put(lock.token, lock);
+    List<Lock> list = paths.get(lock.path);
+    if(list == null) {
+      list = new ArrayList<Lock>(1);
+      paths.put(lock.path, list);
+    }
+    list.add(lock);
+    expiry.add(lock);
+  }
+
+  /**
+   * Removes a lock from the indexes.
+   * @param token lock token
+   * @return {@code true} if the lock existed
+   */
+  private boolean remove(final String token) {
+    final Lock lock = tokens.remove(token);
+    if(lock == null) return false;
+    final List<Lock> list = paths.get(lock.path);
+    list.remove(lock);
+    if(list.isEmpty()) paths.remove(lock.path);
+    expiry.remove(lock);
+    return true;
+  }
+
+  /**
+   * Removes expired locks.
+   */
+  private void purge() {
+    final long time = System.currentTimeMillis();
+    while(!expiry.isEmpty() && expiry.first().expires <= time) {
+      remove(expiry.first().token);
+    }
+  }
+
+  /**
+   * Reads the journal.
+   * @throws IOException I/O exception
+   */
+  private void read() throws IOException {
+    final BufferedReader br = new BufferedReader(new InputStreamReader(
+        new FileInputStream(journal.file()), Token.UTF8));
+    try {
+      for(String line; (line = br.readLine()) != null;) {
+        final String[] f = line.split("\t", -1);
+        for(int i = 0; i < f.length; i++) f[i] = URLDecoder.decode(f[i], Token.UTF8);
+        try {
+          if(f[0].equals(LOCK) && f.length == 9) {
+            final Lock lock = new Lock(f[2], f[1], f[3], f[4], f[5], f[6],
+                Long.parseLong(f[7]), Long.parseLong(f[8]));
+            remove(lock.token);
+            add(lock);
+          } else if(f[0].equals(REFRESH) && f.length == 3) {
+            final Lock lock = tokens.get(f[1]);
+            if(lock != null) {
+              expiry.remove(lock);
+              lock.expires = Long.parseLong(f[2]);
+              expiry.add(lock);
+            }
+          } else if(f[0].equals(UNLOCK) && f.length == 2) {
+            remove(f[1]);
+          }
+        } catch(final NumberFormatException ex) {
+          Util.debug(ex);
+        }
+      }
+    } finally {
+      br.close();
+    }
+  }
+
+  /**
+   * Rewrites the journal with the currently active locks. The locks are written
+   * to a temporary file, which then replaces the journal. If the journal cannot be
+   * replaced by a rename, it is deleted before the rename is repeated, or the
+   * temporary file is copied. If all attempts fail, the old journal is kept.
+   */
+  private void compact() {
+    purge();
+    final File jrnl = journal.file();
+    final File tmp = new File(jrnl.getPath() + ".tmp");
+    try {
+      if(out != null) {
+        final OutputStream o = out;
+        out = null;
+        o.close();
+      }
+      final OutputStream os = new FileOutputStream(tmp);
+      try {
+        for(final Lock l : tokens.values()) {
+          os.write(entry(LOCK, l.token, l.path, l.scope, l.type, l.depth, l.owner,
+              Long.toString(l.timeout), Long.toString(l.expires)));
+        }
+      } finally {
+        os.close();
+      }
+      // existing files cannot be replaced by a rename on all platforms
+      if(!tmp.renameTo(jrnl) && !(jrnl.delete() && tmp.renameTo(jrnl))) copy(tmp, jrnl);
+      entries = tokens.size();
+    } catch(final IOException ex) {
+      Util.errln("WebDAV locks could not be written: %", ex);
+    } finally {
+      if(tmp.exists() && !tmp.delete()) tmp.deleteOnExit();
+    }
+    try {
+      out = new FileOutputStream(jrnl, true);
+    } catch(final IOException ex) {
+      Util.errln("WebDAV locks could not be written: %", ex);
+    }
+  }
+
+  /**
+   * Copies the contents of a file.
+   * @param src source file
+   * @param trg target file
+   * @throws IOException I/O exception
+   */
+  private static void copy(final File src, final File trg) throws IOException {
+    final InputStream in = new FileInputStream(src);
+    try {
+      final OutputStream os = new FileOutputStream(trg);
+      try {
+        final byte[] buffer = new byte[IO.BLOCKSIZE];
+        for(int n; (n = in.read(buffer)) != -1;) os.write(buffer, 0, n);
+      } finally {
+        os.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Appends an entry to the journal.
+   * @param fields fields of the entry
+   */
+  private void log(final String... fields) {
+    if(out == null) return;
+    try {
+      out.write(entry(fields));
+      out.flush();
+    } catch(final IOException ex) {
+      Util.errln("WebDAV locks could not be written: %", ex);
+    }
+    if(++entries > Math.max(COMPACT, tokens.size() << 1)) compact();
+  }
+
+  /**
+   * Creates a journal entry.
+   * @param fields fields of the entry
+   * @return entry
+   * @throws IOException I/O exception
+   */
+  private static byte[] entry(final String... fields) throws IOException {
+    final TokenBuilder tb = new TokenBuilder();
+    for(final String f : fields) {
+      if(!tb.isEmpty()) tb.add('\t');
+      tb.add(URLEncoder.encode(f == null ? "" : f, Token.UTF8));
+    }
+    return tb.add('\n').finish();
+  }
+
+  /**
+   * Normalizes a path.
+   * @param path path
+   * @return normalized path
+   */
+  private static String norm(final String path) {
+    final StringBuilder sb = new StringBuilder();
+    for(final String s : path.split(String.valueOf(SEP))) {
+      if(s.isEmpty()) continue;
+      if(sb.length() != 0) sb.append(SEP);
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Computes the expiration time for the given timeout.
+   * @param timeout timeout in seconds
+   * @return expiration time
+   */
+  private static long expiry(final long timeout) {
+    final long time = System.currentTimeMillis();
+    return timeout >= (Long.MAX_VALUE - time) / 1000 ? Long.MAX_VALUE :
+      time + timeout * 1000;
+  }
+
+  /** Single lock. */
+  private static final class Lock implements Comparable<Lock> {
+    /** Normalized path. */
+    final String path;
+    /** Token. */
+    final String token;
+    /** Scope. */
+    final String scope;
+    /** Type. */
+    final String type;
+    /** Depth. */
+    final String depth;
+    /** Owner. */
+    final String owner;
+    /** Timeout in seconds. */
+    final long timeout;
+    /** Expiration time. */
+    long expires;
+
+    /**
+     * Constructor.
+     * @param p normalized path
+     * @param tk token
+     * @param s scope
+     * @param tp type
+     * @param d depth
+     * @param o owner
+     * @param t timeout in seconds
+     * @param e expiration time
+     */
+    Lock(final String p, final String tk, final String s, final String tp,
+        final String d, final String o, final long t, final long e) {
+      path = p;
+      token = tk;
+      scope = s;
+      type = tp;
+      depth = d;
+      owner = o;
+      timeout = t;
+      expires = e;
+    }
+
+    /**
+     * Checks if this lock applies to the specified path.
+     * @param p normalized path
+     * @return result of check
+     */
+    boolean covers(final String p) {
+      if(p.equals(path)) return true;
+      if(!p.startsWith(path + SEP)) return false;
+      if(depth.startsWith("infinit")) return true;
+      // depth 1: direct children
+      return depth.equals("1") && p.indexOf(SEP, path.length() + 1) == -1;
+    }
+
+    /**
+     * Checks if this lock conflicts with another lock.
+     * @param l other lock
+     * @return result of check
+     */
+    boolean conflicts(final Lock l) {
+      return (covers(l.path) || l.covers(path)) &&
+        (exclusive() || l.exclusive()) && !eq(owner, l.owner);
+    }
+
+    /**
+     * Checks if this lock is exclusive.
+     * @return result of check
+     */
+    boolean exclusive() {
+      return "exclusive".equals(scope);
+    }
+
+    /**
+     * Returns an XML representation of the lock.
+     * @return lock info
+     */
+    String info() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append("<w:lockinfo xmlns:w=\"http://basex.org/modules/webdav\">");
+      element(sb, "path", path);
+      element(sb, "token", token);
+      element(sb, "scope", scope);
+      element(sb, "type", type);
+      element(sb, "depth", depth);
+      element(sb, "owner", owner);
+      element(sb, "timeout", Long.toString(timeout));
+      return sb.append("</w:lockinfo>").toString();
+    }
+
+    @Override
+    public int compareTo(final Lock l) {
+      return expires < l.expires ? -1 : expires > l.expires ? 1 :
+        token.compareTo(l.token);
+    }
+
+    /**
+     * Adds an element.
+     * @param sb string builder
+     * @param name element name
+     * @param value value
+     */
+    private static void element(final StringBuilder sb, final String name,
+        final String value) {
+      sb.append("<w:").append(name).append('>');
+      if(value != null) {
+        for(final char ch : value.toCharArray()) {
+          if(ch == '<') sb.append("&lt;");
+          else if(ch == '&') sb.append("&amp;");
+          else if(ch == '>') sb.append("&gt;");
+          else sb.append(ch);
+        }
+      }
+      sb.append("</w:").append(name).append('>');
+    }
+
+    /**
+     * Compares two strings, which may be {@code null}.
+     * @param a first string
+     * @param b second string
+     * @return result of check
+     */
+    private static boolean eq(final String a, final String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
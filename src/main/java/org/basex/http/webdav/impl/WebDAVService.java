@@ -4,6 +4,11 @@ import org.basex.core.Prop;
 import org.basex.core.Text;
 import org.basex.core.cmd.*;
 import org.basex.http.HTTPContext;
+import org.basex.http.ResourceCache;
+import org.basex.http.RetrieveRaw;
+import org.basex.http.StoreRaw;
+import org.basex.io.IO;
+import org.basex.io.MimeTypes;
 import org.basex.io.in.ArrayInput;
 import org.basex.io.in.BufferInput;
 import org.basex.query.func.*;
@@ -13,15 +18,20 @@ import org.basex.util.DateTime;
 import org.basex.util.Token;
 import org.basex.util.Util;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 
 import static org.basex.http.webdav.impl.WebDAVLockService.*;
 import static org.basex.http.webdav.impl.Utils.*;
+import static org.basex.io.MimeTypes.APP_OCTET;
 import static org.basex.io.MimeTypes.APP_XML;
 import static org.basex.query.func.Function.*;
 
@@ -38,6 +48,10 @@ public final class WebDAVService<T> {
   private final ResourceMetaDataFactory<T> factory;
   /** Locking service. */
   public final WebDAVLockService locking;
+  /** Timestamps of databases, retrieved while processing the current request. */
+  private final HashMap<String, Long> stamps = new HashMap<String, Long>();
+  /** Existence of databases, checked while processing the current request. */
+  private final HashMap<String, Boolean> dbs = new HashMap<String, Boolean>();
 
   /**
    * Constructor.
@@ -58,7 +72,7 @@ public final class WebDAVService<T> {
    */
   public void authenticate(final String user, final String pass) throws IOException {
     http.credentials(user, pass);
-    http.session().close();
+    http.session();
   }
 
   /**
@@ -89,6 +103,7 @@ public final class WebDAVService<T> {
     final Session session = http.session();
     session.execute(new Open(db));
     session.execute(new Delete(dummy));
+    modified(db);
   }
 
   /**
@@ -98,22 +113,42 @@ public final class WebDAVService<T> {
    * @throws IOException I/O exception
    */
   public boolean dbExists(final String db) throws IOException {
+    final Boolean b = dbs.get(db);
+    if(b != null) return b;
+
     final Query q = http.session().query(_DB_LIST.args() + "[. = $db]");
     q.bind("db", db);
     try {
-      return q.more();
+      final boolean exists = q.more();
+      dbs.put(db, exists);
+      return exists;
     } finally {
       q.close();
     }
   }
 
   /**
-   * Retrieves the last modified timestamp of a database.
+   * Retrieves the last modified timestamp of a database. The timestamp is only
+   * retrieved once per request, unless the database is updated.
    * @param db database
    * @return timestamp in milliseconds.
    * @throws IOException I/O exception
    */
   public long timestamp(final String db) throws IOException {
+    final Long l = stamps.get(db);
+    if(l != null) return l;
+    final long ts = queryTimestamp(db);
+    stamps.put(db, ts);
+    return ts;
+  }
+
+  /**
+   * Retrieves the last modified timestamp of a database.
+   * @param db database
+   * @return timestamp in milliseconds.
+   * @throws IOException I/O exception
+   */
+  private long queryTimestamp(final String db) throws IOException {
     final String s = DATA.args(_DB_INFO.args("$p") +
         "/descendant::" + FNDb.toName(Text.TIMESTAMP) + "[1]");
     final Query q = http.session().query(s);
@@ -168,6 +203,7 @@ public final class WebDAVService<T> {
     final Session session = http.session();
     session.execute(new Open(db));
     session.execute(new Delete(p));
+    modified(db);
 
     // create dummy, if parent is an empty folder
     final int ix = p.lastIndexOf(SEP);
@@ -185,6 +221,7 @@ public final class WebDAVService<T> {
     final Session session = http.session();
     session.execute(new Open(db));
     session.execute(new Rename(p, n));
+    modified(db);
 
     // create dummy, if old parent is an empty folder
     final int i1 = p.lastIndexOf(SEP);
@@ -215,6 +252,7 @@ public final class WebDAVService<T> {
     q.bind("tdb", tdb);
     q.bind("tpath", tpath);
     q.execute();
+    dropped(tdb);
   }
 
   /**
@@ -239,6 +277,7 @@ public final class WebDAVService<T> {
     q.bind("tdb", tdb);
     q.bind("tpath", tpath);
     q.execute();
+    dropped(tdb);
   }
 
   /**
@@ -251,11 +290,31 @@ public final class WebDAVService<T> {
    */
   public void retrieve(final String db, final String p, final boolean raw,
       final OutputStream out) throws IOException {
+    retrieve(db, p, raw, out, 0, -1);
+  }
+
+  /**
+   * Writes a file, or a byte range of a raw file, to the specified output stream.
+   * @param db database
+   * @param p path
+   * @param raw is the file a raw file
+   * @param out output stream
+   * @param off offset of the first byte (ignored for XML documents)
+   * @param len number of bytes ({@code -1}: all remaining bytes; ignored for
+   * XML documents)
+   * @throws IOException I/O exception
+   */
+  public void retrieve(final String db, final String p, final boolean raw,
+      final OutputStream out, final long off, final long len) throws IOException {
     final Session session = http.session();
+    if(raw) {
+      // stream raw files without serialization
+      session.execute(new Open(db));
+      session.execute(new RetrieveRaw(p, out, off, len));
+      return;
+    }
     session.setOutputStream(out);
-    final Query q = session.query(raw ?
-        "declare option output:method 'raw'; " + _DB_RETRIEVE.args("$db", "$path") :
-        _DB_OPEN.args("$db", "$path"));
+    final Query q = session.query(_DB_OPEN.args("$db", "$path"));
     q.bind("db", db);
     q.bind("path", p);
     q.execute();
@@ -269,6 +328,7 @@ public final class WebDAVService<T> {
    */
   public T createDb(final String db) throws IOException {
     http.session().execute(new CreateDB(db));
+    dropped(db);
     return factory.database(this, new ResourceMetaData(db, timestamp(db)));
   }
 
@@ -279,6 +339,7 @@ public final class WebDAVService<T> {
    */
   public void dropDb(final String db) throws IOException {
     http.session().execute(new DropDB(db));
+    dropped(db);
   }
 
   /**
@@ -289,6 +350,8 @@ public final class WebDAVService<T> {
    */
   public void renameDb(final String db, final String n) throws IOException {
     http.session().execute(new AlterDB(db, n));
+    dropped(db);
+    dropped(n);
   }
 
   /**
@@ -299,6 +362,7 @@ public final class WebDAVService<T> {
    */
   public void copyDb(final String db, final String n) throws IOException {
     http.session().execute(new Copy(db, n));
+    dropped(n);
   }
 
   /**
@@ -309,36 +373,41 @@ public final class WebDAVService<T> {
    * @throws IOException I/O exception
    */
   public List<T> list(final String db, final String path) throws IOException {
-    final List<T> ch = new ArrayList<T>();
-    final HashSet<String> paths = new HashSet<String>();
-    final Query q = http.session().query(
-        "for $a in " + _DB_LIST_DETAILS.args("$d", "$p") +
-        "return ($a/@raw/data()," +
-        "$a/@content-type/data()," +
-        "$a/@modified-date/data()," +
-        "$a/@size/data()," +
-        SUBSTRING_AFTER.args("$a/text()", "$p") + ')');
-    q.bind("d", db);
-    q.bind("p", path);
-    while(q.more()) {
-      final boolean raw = Boolean.parseBoolean(q.next());
-      final String ctype = q.next();
-      final long mod = DateTime.parse(q.next());
-      final Long size = raw ? Long.valueOf(q.next()) : null;
-      final String p = stripLeadingSlash(q.next());
-      final int ix = p.indexOf(SEP);
-      // check if document or folder
-      if(ix < 0) {
-        if(!p.equals(DUMMY))
-          ch.add(factory.file(this, new ResourceMetaData(db, path + SEP + p, mod,
-            raw, ctype, size)));
-      } else {
-        final String dir = path + SEP + p.substring(0, ix);
-        if(paths.add(dir))
-          ch.add(factory.folder(this, new ResourceMetaData(db, dir, mod)));
+    // the stamp must be captured before the resources are retrieved
+    final long st = stamp(db);
+    DirectoryIndex di = DirectoryIndex.get(db, st);
+    if(di == null) {
+      // build a complete index if the database has not changed since the last
+      // listing; otherwise, only retrieve the resources of the specified folder
+      final boolean all = DirectoryIndex.stable(db, st);
+      di = new DirectoryIndex();
+      final Query q = http.session().query(
+          "for $a in " + _DB_LIST_DETAILS.args("$d", "$p") +
+          "return ($a/@raw/data()," +
+          "$a/@content-type/data()," +
+          "$a/@modified-date/data()," +
+          "$a/@size/data()," +
+          "$a/text())");
+      q.bind("d", db);
+      q.bind("p", all ? "" : path);
+      try {
+        while(q.more()) {
+          final boolean raw = Boolean.parseBoolean(q.next());
+          final String ctype = q.next();
+          final long mod = DateTime.parse(q.next());
+          final Long size = raw ? Long.valueOf(q.next()) : null;
+          di.add(q.next(), raw, ctype, size, mod);
+        }
+      } finally {
+        q.close();
       }
+      if(all) DirectoryIndex.put(db, di, st);
+    }
+
+    final List<T> ch = new ArrayList<T>();
+    for(final ResourceMetaData md : di.children(db, path, DUMMY, timestamp(db))) {
+      ch.add(md.folder ? factory.folder(this, md) : factory.file(this, md));
     }
-    q.close();
     return ch;
   }
 
@@ -392,11 +461,21 @@ public final class WebDAVService<T> {
    * @throws IOException I/O exception
    */
   public T resource(final String db, final String p) throws IOException {
-    return exists(db, p) ?
-      factory.file(this, metaData(db, p)) :
-      pathExists(db, p) ?
+    // the stamp must be captured before the meta data is retrieved
+    final long st = stamp(db);
+    ResourceMetaData md = MetaDataCache.get(db, p, st);
+    if(md == null) {
+      // resolve resource via the directory index, or via queries
+      final DirectoryIndex di = DirectoryIndex.get(db, st);
+      md = di != null ? di.resource(db, p) :
+        exists(db, p) ? metaData(db, p) :
+        pathExists(db, p) ? MetaDataCache.FOLDER : MetaDataCache.NONE;
+      MetaDataCache.put(db, p, st, md);
+    }
+    return md == MetaDataCache.NONE ? null :
+      md == MetaDataCache.FOLDER ?
         factory.folder(this, new ResourceMetaData(db, p, timestamp(db))) :
-        null;
+        factory.file(this, md);
   }
 
   /**
@@ -405,30 +484,37 @@ public final class WebDAVService<T> {
    * @param p path
    * @param n file name
    * @param in file content
+   * @param type content type (may be {@code null})
    * @return object representing the newly added file
    * @throws IOException I/O exception
    */
   public T createFile(final String db, final String p, final String n,
-    final InputStream in) throws IOException {
+    final InputStream in, final String type) throws IOException {
     final Session session = http.session();
     session.execute(new Open(db));
     final String dbp = p.isEmpty() ? n : p + SEP + n;
     // delete old resource if it already exists
-    if(pathExists(db, dbp)) session.execute(new Delete(dbp));
+    if(pathExists(db, dbp)) {
+      session.execute(new Delete(dbp));
+      modified(db);
+    } else {
       // otherwise, delete dummy file
-    else deleteDummy(db, p);
-    return addFile(db, dbp, in);
+      deleteDummy(db, p);
+    }
+    return addFile(db, dbp, in, type);
   }
 
   /**
    * Creates a new database from the given file.
    * @param n file name
    * @param in file content
+   * @param type content type (may be {@code null})
    * @return object representing the newly created database
    * @throws IOException I/O exception
    */
-  public T createFile(final String n, final InputStream in) throws IOException {
-    return addFile(null, n, in);
+  public T createFile(final String n, final InputStream in, final String type)
+      throws IOException {
+    return addFile(null, n, in, type);
   }
 
   /**
@@ -439,10 +525,15 @@ public final class WebDAVService<T> {
    * @throws IOException I/O exception
    */
   private boolean pathExists(final String db, final String p) throws IOException {
-    final Query q = http.session().query(COUNT.args(_DB_LIST.args("$d", "$p")));
+    // consult directory index if it is up-to-date
+    final DirectoryIndex di = DirectoryIndex.get(db, stamp(db));
+    if(di != null) return di.exists(p);
+
+    // otherwise, stop after the first matching resource
+    final Query q = http.session().query(EXISTS.args(_DB_LIST.args("$d", "$p")));
     q.bind("d", db);
     q.bind("p", p);
-    return !"0".equals(q.execute());
+    return Boolean.parseBoolean(q.execute());
   }
 
   /**
@@ -468,6 +559,7 @@ public final class WebDAVService<T> {
    */
   private T createDb(final String db, final InputStream in) throws IOException {
     http.session().create(db, in);
+    dropped(db);
     return factory.database(this, new ResourceMetaData(db, timestamp(db)));
   }
 
@@ -482,11 +574,11 @@ public final class WebDAVService<T> {
   private T addXML(final String db, final String p, final InputStream in)
       throws IOException {
 
-    final Session session = http.session();
-    session.execute(new Set(Prop.CHOP, false));
-    session.add(p, in);
-    return factory.file(this, new ResourceMetaData(db, p, timestamp(db), false,
-      APP_XML, null));
+    http.set(Prop.CHOP, false);
+    http.session().add(p, in);
+    modified(db);
+    final long ts = timestamp(db);
+    return factory.file(this, new ResourceMetaData(db, p, ts, false, APP_XML, null));
   }
 
   /**
@@ -497,11 +589,13 @@ public final class WebDAVService<T> {
    * @return object representing the newly added file
    * @throws IOException I/O exception
    */
-  private T store(final String db, final String p, final InputStream in)
+  private T store(final String db, final String p, final File file)
       throws IOException {
 
-    http.session().store(p, in);
-    return factory.file(this, metaData(db, p));
+    http.session().execute(new StoreRaw(p, file));
+    modified(db);
+    final ResourceMetaData md = metaData(db, p);
+    return factory.file(this, md);
   }
 
   /**
@@ -512,29 +606,16 @@ public final class WebDAVService<T> {
    * @return object representing the newly added file
    * @throws IOException I/O exception
    */
-  private T addFile(final String db, final String p, final InputStream in)
-      throws IOException {
+  private T addFile(final String db, final String p, final InputStream in,
+      final String type) throws IOException {
 
-    // use 4MB as buffer input
-    final BufferInput bi = new BufferInput(in, 1 << 22);
+    final BufferInput bi = new BufferInput(in);
     try {
-      // guess the content type from the first character
-      if(peek(bi) == '<') {
-        try {
-          // add input as XML document
-          return db == null ? createDb(dbname(p), bi) : addXML(db, p, bi);
-        } catch(final IOException ex) {
-          // reset stream if it did not work out
-          try {
-            bi.reset();
-          } catch(final IOException e) {
-            // throw original exception if input cannot be reset
-            throw ex;
-          }
-        }
-      }
+      final Boolean xml = xml(p, type, bi);
+      // stream input to the XML parser
+      if(xml == Boolean.TRUE) return db == null ? createDb(dbname(p), bi) : addXML(db, p, bi);
 
-      // add input as raw file
+      // otherwise, spool input to a temporary file in the database directory
       final String d;
       if(db == null) {
         d = dbname(p);
@@ -542,12 +623,75 @@ public final class WebDAVService<T> {
       } else {
         d = db;
       }
-      return store(d, p, bi);
+      final File tmp = spool(d, bi);
+      try {
+        if(xml == null) {
+          // content is unknown: try to parse it as XML
+          final InputStream fi = new BufferedInputStream(new FileInputStream(tmp));
+          try {
+            return addXML(d, p, fi);
+          } catch(final IOException ex) {
+            Util.debug(ex);
+          } finally {
+            fi.close();
+          }
+        }
+        return store(d, p, tmp);
+      } finally {
+        if(tmp.exists() && !tmp.delete()) tmp.deleteOnExit();
+      }
     } finally {
       bi.close();
     }
   }
 
+  /**
+   * Decides if an uploaded file will be stored as XML document or as raw file.
+   * The content type, the file suffix and the first character of the input are
+   * considered.
+   * @param p path
+   * @param type content type (may be {@code null})
+   * @param bi buffered input
+   * @return {@code true} for XML documents, {@code false} for raw files, or
+   * {@code null} if the input needs to be parsed to decide
+   * @throws IOException I/O exception
+   */
+  private static Boolean xml(final String p, final String type,
+      final BufferInput bi) throws IOException {
+
+    String ct = type == null ? "" : type.replaceAll(";.*", "").trim();
+    if(ct.isEmpty() || ct.equals(APP_OCTET)) ct = MimeTypes.get(p);
+    final boolean start = peek(bi) == '<';
+    if(MimeTypes.isXML(ct)) return start;
+    return ct.equals(APP_OCTET) && start ? null : Boolean.FALSE;
+  }
+
+  /**
+   * Writes the input to a temporary file. The file is created in the database
+   * directory, so that it can later be moved to its target location.
+   * @param db database
+   * @param in input
+   * @return temporary file
+   * @throws IOException I/O exception
+   */
+  private File spool(final String db, final InputStream in) throws IOException {
+    final File dir = http.context().mprop.dbpath(db).file();
+    final File tmp = File.createTempFile(UPLOAD, ".tmp", dir);
+    try {
+      final OutputStream out = new FileOutputStream(tmp);
+      try {
+        final byte[] buffer = new byte[IO.BLOCKSIZE];
+        for(int n; (n = in.read(buffer)) != -1;) out.write(buffer, 0, n);
+      } finally {
+        out.close();
+      }
+    } catch(final IOException ex) {
+      tmp.delete();
+      throw ex;
+    }
+    return tmp;
+  }
+
   /**
    * Checks if a folder is empty and create a dummy document.
    * @param db database
@@ -560,6 +704,39 @@ public final class WebDAVService<T> {
 
     final Session session = http.session();
     session.execute(new Open(db));
-    session.store(p + SEP + DUMMY, new ArrayInput(Token.EMPTY));
+    final String dummy = p + SEP + DUMMY;
+    session.store(dummy, new ArrayInput(Token.EMPTY));
+    modified(db);
+  }
+
+  /**
+   * Invalidates cached information on a database after it has been updated.
+   * @param db database
+   */
+  private void modified(final String db) {
+    stamps.remove(db);
+    MetaDataCache.drop(db);
+    DirectoryIndex.drop(db);
+  }
+
+  /**
+   * Invalidates all cached information on a database after it has been created,
+   * dropped, renamed, or updated by a bulk operation.
+   * @param db database
+   */
+  private void dropped(final String db) {
+    modified(db);
+    dbs.remove(db);
+  }
+
+  /**
+   * Returns the stamp of a database, which is used to validate cached information.
+   * In contrast to the timestamp, it reflects all updates (see
+   * {@link ResourceCache#stamp}).
+   * @param db database
+   * @return stamp, or {@code 0} if the database does not exist
+   */
+  private long stamp(final String db) {
+    return ResourceCache.stamp(http.context(), db);
   }
 }
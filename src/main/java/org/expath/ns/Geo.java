@@ -2,20 +2,17 @@ package org.expath.ns;
 
 import static org.basex.util.Token.*;
 
-import java.io.*;
-
-import org.basex.build.*;
-import org.basex.build.xml.*;
-import org.basex.io.*;
+import org.basex.data.*;
 import org.basex.query.*;
+import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
 import org.basex.query.value.type.*;
 
 import com.vividsolutions.jts.geom.*;
 import com.vividsolutions.jts.io.*;
-import com.vividsolutions.jts.io.gml2.*;
 
 /**
  * This module contains geo spatial functions for the Geo module.
@@ -50,6 +47,9 @@ public class Geo extends QueryModule {
     Q_GML_MULTILINESTRING, Q_GML_MULTIPOLYGON, Q_GML_LINEARRING
   };
 
+  /** Geometries of the current query. */
+  private final GeoCache cache = new GeoCache();
+
   /**
    * Returns the dimension of an item.
    * @param node xml element containing gml object(s)
@@ -657,8 +657,104 @@ public class Geo extends QueryModule {
     return gmlWriter(((Polygon) geo).getInteriorRingN((int) n - 1));
   }
 
+  /**
+   * Returns all geometries of a database that intersect the specified geometry.
+   * The geometries are looked up in a spatial index, which is created
+   * on demand and rebuilt after the database has been updated.
+   * @param db name of database
+   * @param node xml element containing gml object(s)
+   * @return geometry elements in document order
+   * @throws QueryException query exception
+   */
+  public Value indexIntersects(final Str db, final ANode node) throws QueryException {
+    final Geometry geo = checkGeo(node);
+    final Data data = data(db);
+    return GeoIndex.get(data, QNAMES).intersects(data, geo);
+  }
+
+  /**
+   * Returns the geometries of a database that are closest to the specified geometry.
+   * The geometries are looked up in a spatial index, which is created
+   * on demand and rebuilt after the database has been updated.
+   * @param db name of database
+   * @param node xml element containing gml object(s)
+   * @param number maximum number of geometries
+   * @return geometry elements, ordered by their distance
+   * @throws QueryException query exception
+   */
+  public Value indexNearest(final Str db, final ANode node, final Int number)
+      throws QueryException {
+    final Geometry geo = checkGeo(node);
+    final Data data = data(db);
+    return GeoIndex.get(data, QNAMES).nearest(data, geo, number.itr());
+  }
+
+  /**
+   * Returns all geometries that are contained in the specified geometry.
+   * The geometry is prepared once for all tests.
+   * @param node xml element containing gml object(s)
+   * @param nodes xml elements containing gml object(s)
+   * @return geometry elements in their original order
+   * @throws QueryException query exception
+   */
+  @Deterministic
+  public Value filterContains(final ANode node, final Value nodes) throws QueryException {
+    return filter(node, nodes, true);
+  }
+
+  /**
+   * Returns all geometries that intersect the specified geometry.
+   * The geometry is prepared once for all tests.
+   * @param node xml element containing gml object(s)
+   * @param nodes xml elements containing gml object(s)
+   * @return geometry elements in their original order
+   * @throws QueryException query exception
+   */
+  @Deterministic
+  public Value filterIntersects(final ANode node, final Value nodes) throws QueryException {
+    return filter(node, nodes, false);
+  }
+
   // PRIVATE METHODS (hidden from user of module) ========================================
 
+  /**
+   * Returns all geometries that are contained in or intersect the specified geometry.
+   * @param node xml element containing gml object(s)
+   * @param nodes xml elements containing gml object(s)
+   * @param contains contains or intersects test
+   * @return geometry elements
+   * @throws QueryException query exception
+   */
+  private Value filter(final ANode node, final Value nodes, final boolean contains)
+      throws QueryException {
+
+    final Geometry geo = checkGeo(node);
+    final int ns = (int) nodes.size();
+    final ANode[] nds = new ANode[ns];
+    final Geometry[] geos = new Geometry[ns];
+    for(int n = 0; n < ns; n++) {
+      final Item it = nodes.itemAt(n);
+      if(!(it instanceof ANode)) Err.FUNCMP.thrw(null, this, NodeType.ELM, it.type);
+      nds[n] = (ANode) it;
+      geos[n] = checkGeo(nds[n]);
+    }
+
+    final boolean[] match = GeoFilter.filter(geo, geos, contains);
+    final ValueBuilder vb = new ValueBuilder();
+    for(int n = 0; n < ns; n++) if(match[n]) vb.add(nds[n]);
+    return vb.value();
+  }
+
+  /**
+   * Returns the specified database.
+   * @param db name of database
+   * @return data reference
+   * @throws QueryException query exception
+   */
+  private Data data(final Str db) throws QueryException {
+    return context.resource.data(db.string(), null);
+  }
+
   /**
    * Reads an element as a gml node. Returns a geometry element
    * or throws an exception if the element is of the wrong type.
@@ -686,12 +782,9 @@ public class Geo extends QueryModule {
     final QNm qname = node.qname();
     for(final QNm geo : names) {
       if(!qname.eq(geo)) continue;
-      // type found... create reader and geometry element
+      // type found... return cached or parsed geometry
       try {
-        final String input = node.serialize().toString();
-        final GMLReader gmlReader = new GMLReader();
-        final GeometryFactory geoFactory = new GeometryFactory();
-        return gmlReader.read(input, geoFactory);
+        return cache.get(node);
       } catch (final Throwable e) {
         throw GeoErrors.gmlReaderErr(e);
       }
@@ -700,26 +793,14 @@ public class Geo extends QueryModule {
   }
 
   /**
-   * Writes an geometry and returns a string representation of the geometry.
+   * Creates a GML element for the specified geometry.
    * @param geometry geometry
-   * @return DBNode database node
+   * @return element
    * @throws QueryException exception
    */
-  private DBNode gmlWriter(final Geometry geometry) throws QueryException {
-    String geo;
-    try {
-      // write geometry and add namespace declaration
-      geo = new GMLWriter().write(geometry).replaceAll(
-          "^<gml:(.*?)>", "<gml:$1 xmlns:gml='" + string(URI) + "'>");
-    } catch(final Exception ex) {
-      throw GeoErrors.gmlWriterErr(ex);
-    }
-
-    try {
-      final IO io = new IOContent(geo);
-      return new DBNode(MemBuilder.build(new XMLParser(io, context.context.prop)));
-    } catch(final IOException ex) {
-      throw Err.IOERR.thrw(null, ex);
-    }
+  private static FElem gmlWriter(final Geometry geometry) throws QueryException {
+    final FElem elem = GeoWriter.write(geometry);
+    if(elem == null) throw GeoErrors.gmlWriterErr(geometry.getGeometryType());
+    return elem;
   }
-}
\ No newline at end of file
+}
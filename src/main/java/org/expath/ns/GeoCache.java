@@ -0,0 +1,163 @@
+package org.expath.ns;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.core.*;
+import org.basex.query.value.node.*;
+
+import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.io.gml2.*;
+
+/**
+ * This class caches the geometries of the Geo module.
+ *
+ * Within a query, geometries are cached by node identity: database nodes are
+ * identified by their data reference and pre value, and fragments by their
+ * object reference. As updates are only applied at the end of a query, cached
+ * entries cannot get outdated.
+ *
+ * Geometries can additionally be shared across queries by assigning a positive
+ * size to the {@code org.basex.geocache} system property. The shared cache is
+ * indexed by the serialized GML representation, so that only the parsing step
+ * will be skipped. It is only consulted if a geometry cannot be directly created
+ * by the {@link GeoReader}. Statistics can be requested via
+ * {@code Q{java:org.expath.ns.GeoCache}info()}.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class GeoCache {
+  /** Maximum number of geometries cached per query. */
+  private static final int MAX = 1 << 16;
+  /** Maximum number of geometries shared across queries (0: disabled). */
+  private static final int SHARED_MAX = Integer.getInteger(Prop.DBPREFIX + "geocache", 0);
+  /** Geometries shared across queries, indexed by their GML representation. */
+  private static final Map<String, Geometry> SHARED = lru(SHARED_MAX);
+  /** Number of geometries found in a query cache. */
+  private static final AtomicLong HITS = new AtomicLong();
+  /** Number of geometries found in the shared cache. */
+  private static final AtomicLong SHARED_HITS = new AtomicLong();
+  /** Number of geometries that were directly created from nodes. */
+  private static final AtomicLong READ = new AtomicLong();
+  /** Number of parsed geometries. */
+  private static final AtomicLong MISSES = new AtomicLong();
+
+  /** Geometries of the current query, indexed by node identity. */
+  private final Map<Key, Geometry> cache = lru(MAX);
+  /** Geometry factory. */
+  private final GeometryFactory factory = new GeometryFactory();
+
+  /**
+   * Returns the geometry of the specified node. The node is parsed if no
+   * geometry has been cached yet.
+   * @param node node
+   * @return geometry
+   * @throws Exception exception
+   */
+  Geometry get(final ANode node) throws Exception {
+    final Key key = node instanceof DBNode ? new Key(((DBNode) node).data,
+        ((DBNode) node).pre) : new Key(node, 0);
+    Geometry geo = cache.get(key);
+    if(geo != null) {
+      HITS.incrementAndGet();
+      return geo;
+    }
+
+    geo = create(node);
+    cache.put(key, geo);
+    return geo;
+  }
+
+  /**
+   * Creates the geometry of the specified node. The query cache is bypassed.
+   * @param node node
+   * @return geometry
+   * @throws Exception exception
+   */
+  Geometry create(final ANode node) throws Exception {
+    // create geometry from node
+    Geometry geo = GeoReader.read(node, factory);
+    if(geo != null) {
+      READ.incrementAndGet();
+      return geo;
+    }
+
+    // serialize and parse node
+    final String input = node.serialize().toString();
+    if(SHARED_MAX > 0) {
+      synchronized(SHARED) {
+        geo = SHARED.get(input);
+      }
+    }
+    if(geo != null) {
+      SHARED_HITS.incrementAndGet();
+    } else {
+      MISSES.incrementAndGet();
+      geo = new GMLReader().read(input, factory);
+      if(SHARED_MAX > 0) {
+        synchronized(SHARED) {
+          SHARED.put(input, geo);
+        }
+      }
+    }
+    return geo;
+  }
+
+  /**
+   * Returns cache statistics.
+   * @return statistics
+   */
+  public static String info() {
+    final long h = HITS.get(), s = SHARED_HITS.get(), r = READ.get(), m = MISSES.get();
+    final long all = h + s + r + m;
+    return "Geometries: " + all + " requested, " + h + " query cache hits, " +
+        s + " shared cache hits, " + r + " read from nodes, " + m +
+        " parsed (hit rate: " + (all == 0 ? 0 : (h + s) * 100 / all) + "%)";
+  }
+
+  /**
+   * Creates a map that discards the least recently used entries.
+   * @param max maximum number of entries
+   * @param <K> key type
+   * @return map
+   */
+  private static <K> Map<K, Geometry> lru(final int max) {
+    return new LinkedHashMap<K, Geometry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<K, Geometry> eldest) {
+        return size() > max;
+      }
+    };
+  }
+
+  /** Node identity. */
+  private static final class Key {
+    /** Data reference or node. */
+    final Object ref;
+    /** Pre value. */
+    final int pre;
+
+    /**
+     * Constructor.
+     * @param r data reference or node
+     * @param p pre value
+     */
+    Key(final Object r, final int p) {
+      ref = r;
+      pre = p;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if(!(obj instanceof Key)) return false;
+      final Key k = (Key) obj;
+      return ref == k.ref && pre == k.pre;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(ref) * 31 + pre;
+    }
+  }
+}
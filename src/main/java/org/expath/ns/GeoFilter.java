@@ -0,0 +1,120 @@
+package org.expath.ns;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.util.*;
+
+import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.geom.prep.*;
+
+/**
+ * This class tests a sequence of geometries against a single geometry.
+ * The single geometry is prepared once, so that its topology is not recomputed
+ * for each test, and geometries with non-matching envelopes are skipped.
+ * Large sequences are split into chunks, which are tested in parallel by a
+ * shared pool of daemon threads. As prepared geometries lazily create internal
+ * structures, each chunk uses its own prepared geometry. The minimum chunk size
+ * can be assigned via the system property {@code org.basex.geofilter}.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class GeoFilter {
+  /** Minimum number of geometries per parallel task. */
+  private static final int CHUNK =
+      Math.max(1, Integer.getInteger(Prop.DBPREFIX + "geofilter", 1 << 12));
+  /** Number of available processors. */
+  private static final int PROCS = Runtime.getRuntime().availableProcessors();
+  /** Thread pool, shared by all filter operations. */
+  private static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(PROCS, PROCS,
+      60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r, "GeoFilter");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
+  static {
+    // release idle threads
+    POOL.allowCoreThreadTimeOut(true);
+  }
+
+  /** Private constructor. */
+  private GeoFilter() { }
+
+  /**
+   * Tests the specified geometries.
+   * @param geo geometry to be prepared
+   * @param geos geometries to be tested
+   * @param contains test if the geometries are contained in the prepared
+   *   geometry (otherwise, test if they intersect)
+   * @return results
+   */
+  static boolean[] filter(final Geometry geo, final Geometry[] geos,
+      final boolean contains) {
+
+    final int gs = geos.length;
+    final boolean[] match = new boolean[gs];
+    final int threads = (int) Math.min(((long) gs + CHUNK - 1) / CHUNK, PROCS);
+    if(threads <= 1) {
+      filter(geo, geos, contains, match, 0, gs);
+      return match;
+    }
+
+    final ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(int t = 0; t < threads; t++) {
+      final int s = (int) ((long) gs * t / threads), e = (int) ((long) gs * (t + 1) / threads);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          filter(geo, geos, contains, match, s, e);
+          return null;
+        }
+      });
+    }
+
+    try {
+      // remaining tasks are cancelled if the current thread is interrupted
+      for(final Future<Void> f : POOL.invokeAll(tasks)) f.get();
+    } catch(final ExecutionException ex) {
+      // tests only raise unchecked exceptions
+      final Throwable th = ex.getCause();
+      if(th instanceof RuntimeException) throw (RuntimeException) th;
+      if(th instanceof Error) throw (Error) th;
+      Util.notexpected(th);
+    } catch(final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      Util.notexpected(ex);
+    }
+    return match;
+  }
+
+  /**
+   * Tests a range of geometries.
+   * @param geo geometry to be prepared
+   * @param geos geometries to be tested
+   * @param contains contains or intersects test
+   * @param match results
+   * @param s first geometry
+   * @param e last geometry (exclusive)
+   */
+  private static void filter(final Geometry geo, final Geometry[] geos,
+      final boolean contains, final boolean[] match, final int s, final int e) {
+
+    final PreparedGeometry prep = PreparedGeometryFactory.prepare(geo);
+    final Envelope env = geo.getEnvelopeInternal();
+    for(int g = s; g < e; g++) {
+      final Geometry cand = geos[g];
+      final Envelope ce = cand.getEnvelopeInternal();
+      if(contains) {
+        match[g] = env.contains(ce) && prep.contains(cand);
+      } else {
+        match[g] = env.intersects(ce) && prep.intersects(cand);
+      }
+    }
+  }
+}
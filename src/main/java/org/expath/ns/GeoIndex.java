@@ -0,0 +1,208 @@
+package org.expath.ns;
+
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
+
+import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.index.strtree.*;
+
+/**
+ * Spatial index of a database. The index is an STR tree over the envelopes of
+ * all outermost GML geometries of a database. It is created when it is
+ * requested for the first time, and it is kept in main memory until the
+ * timestamp or the size of the database changes. Indexes are weakly bound to
+ * their database instances: they are discarded as soon as a closed database
+ * is garbage collected. Elements that do not contain valid geometries are skipped.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class GeoIndex {
+  /** Spatial indexes, indexed by database instances. */
+  private static final WeakHashMap<Data, GeoIndex> INDEXES =
+      new WeakHashMap<Data, GeoIndex>();
+
+  /** Timestamp of the database. */
+  private final long time;
+  /** Size of the database. */
+  private final int size;
+  /** STR tree. */
+  private final STRtree tree = new STRtree();
+  /** Envelope of all geometries. */
+  private final Envelope bounds = new Envelope();
+  /** Number of indexed geometries. */
+  private int count;
+
+  /**
+   * Constructor.
+   * @param data data reference
+   * @param names names of geometry elements
+   */
+  private GeoIndex(final Data data, final QNm[] names) {
+    time = data.meta.time;
+    size = data.meta.size;
+
+    final GeoCache cache = new GeoCache();
+    for(int pre = 0; pre < size;) {
+      final int kind = data.kind(pre);
+      if(kind == Data.ELEM) {
+        final DBNode node = new DBNode(data, pre);
+        if(geometry(node.qname(), names)) {
+          try {
+            final Geometry geo = cache.create(node);
+            if(!geo.isEmpty()) {
+              tree.insert(geo.getEnvelopeInternal(), new Entry(pre, geo, 0));
+              bounds.expandToInclude(geo.getEnvelopeInternal());
+              count++;
+            }
+          } catch(final Exception ex) {
+            // skip invalid geometries
+          }
+          // skip descendants of geometries
+          pre += data.size(pre, kind);
+          continue;
+        }
+      }
+      pre++;
+    }
+    tree.build();
+  }
+
+  /**
+   * Returns the spatial index of the specified database. The index is created
+   * if it does not exist yet, or if it is outdated.
+   * @param data data reference
+   * @param names names of geometry elements
+   * @return index
+   */
+  static GeoIndex get(final Data data, final QNm[] names) {
+    synchronized(INDEXES) {
+      final GeoIndex ix = INDEXES.get(data);
+      if(ix != null && ix.time == data.meta.time && ix.size == data.meta.size) return ix;
+    }
+    // build index outside the lock; concurrent requests may build it twice
+    final GeoIndex ix = new GeoIndex(data, names);
+    synchronized(INDEXES) {
+      INDEXES.put(data, ix);
+    }
+    return ix;
+  }
+
+  /**
+   * Returns all geometry elements that intersect the specified geometry.
+   * @param data data reference
+   * @param geo geometry
+   * @return nodes in document order
+   */
+  Value intersects(final Data data, final Geometry geo) {
+    final ArrayList<Entry> list = new ArrayList<Entry>();
+    for(final Object o : tree.query(geo.getEnvelopeInternal())) {
+      final Entry e = (Entry) o;
+      if(e.geo.intersects(geo)) list.add(e);
+    }
+    Collections.sort(list, new Comparator<Entry>() {
+      @Override
+      public int compare(final Entry e1, final Entry e2) {
+        return e1.pre - e2.pre;
+      }
+    });
+    return nodes(data, list);
+  }
+
+  /**
+   * Returns the geometry elements that are closest to the specified geometry.
+   * The search window is enlarged until it contains the requested number of
+   * geometries, or all geometries of the index.
+   * @param data data reference
+   * @param geo geometry
+   * @param k maximum number of returned elements
+   * @return nodes, ordered by their distance
+   */
+  Value nearest(final Data data, final Geometry geo, final long k) {
+    if(k <= 0 || count == 0 || geo.isEmpty()) return Empty.SEQ;
+    final int max = (int) Math.min(k, count);
+
+    // initial distance: side length of an area that contains the requested number
+    // of geometries, assuming an equal distribution
+    double dist = Math.sqrt(bounds.getArea() * max / count);
+    if(dist == 0) dist = Math.max(bounds.getWidth(), bounds.getHeight()) / count;
+    if(dist == 0) dist = 1;
+
+    final ArrayList<Entry> list = new ArrayList<Entry>();
+    final Envelope env = geo.getEnvelopeInternal();
+    while(true) {
+      list.clear();
+      final Envelope search = new Envelope(env);
+      search.expandBy(dist);
+      // accept all candidates if the window contains all geometries
+      final boolean all = search.contains(bounds);
+      for(final Object o : tree.query(search)) {
+        final Entry e = (Entry) o;
+        // all geometries within the current distance have been found
+        final double d = e.geo.distance(geo);
+        if(all || d <= dist) list.add(new Entry(e.pre, e.geo, d));
+      }
+      if(all || list.size() >= max) break;
+      dist *= 2;
+    }
+    Collections.sort(list, new Comparator<Entry>() {
+      @Override
+      public int compare(final Entry e1, final Entry e2) {
+        final int c = Double.compare(e1.dist, e2.dist);
+        return c != 0 ? c : e1.pre - e2.pre;
+      }
+    });
+    return nodes(data, list.size() > max ? list.subList(0, max) : list);
+  }
+
+  /**
+   * Returns the nodes of the specified entries.
+   * @param data data reference
+   * @param list entries
+   * @return nodes
+   */
+  private static Value nodes(final Data data, final List<Entry> list) {
+    final ValueBuilder vb = new ValueBuilder(list.size());
+    for(final Entry e : list) vb.add(new DBNode(data, e.pre));
+    return vb.value();
+  }
+
+  /**
+   * Checks if the specified name is the name of a geometry.
+   * @param name name
+   * @param names names of geometry elements
+   * @return result of check
+   */
+  private static boolean geometry(final QNm name, final QNm[] names) {
+    for(final QNm nm : names) if(name.eq(nm)) return true;
+    return false;
+  }
+
+  /** Index entry. */
+  private static final class Entry {
+    /** Pre value. */
+    final int pre;
+    /** Geometry. */
+    final Geometry geo;
+    /** Distance (only assigned in nearest neighbor searches). */
+    final double dist;
+
+    /**
+     * Constructor.
+     * @param p pre value
+     * @param g geometry
+     * @param d distance
+     */
+    Entry(final int p, final Geometry g, final double d) {
+      pre = p;
+      geo = g;
+      dist = d;
+    }
+  }
+}
@@ -0,0 +1,332 @@
+package org.expath.ns;
+
+import static org.basex.util.Token.*;
+
+import java.util.*;
+
+import org.basex.query.iter.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+
+import com.vividsolutions.jts.geom.*;
+
+/**
+ * This class creates geometries from GML 2 elements. In contrast to the JTS
+ * {@code GMLReader}, the nodes are not serialized and parsed again: coordinates
+ * are directly read from the text nodes.
+ *
+ * Only the structures that are known to be well-formed are handled by this
+ * reader. In all other cases (e.g., if attributes like {@code srsName} or
+ * non-default separators are specified, or if the input is invalid),
+ * {@code null} is returned, and the caller will resort to the JTS parser.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class GeoReader {
+  /** GML URI. */
+  private static final byte[] URI = token("http://www.opengis.net/gml");
+  /** Element names. */
+  private static final byte[] POINT = token("Point"), LINESTRING = token("LineString"),
+    LINEARRING = token("LinearRing"), POLYGON = token("Polygon"),
+    MULTIPOINT = token("MultiPoint"), MULTILINESTRING = token("MultiLineString"),
+    MULTIPOLYGON = token("MultiPolygon"), POINTMEMBER = token("pointMember"),
+    LINESTRINGMEMBER = token("lineStringMember"), POLYGONMEMBER = token("polygonMember"),
+    OUTER = token("outerBoundaryIs"), INNER = token("innerBoundaryIs"),
+    COORDINATES = token("coordinates"), COORD = token("coord");
+  /** Names of coordinate elements. */
+  private static final byte[][] XYZ = { token("X"), token("Y"), token("Z") };
+  /** Powers of ten that can be exactly represented as double values. */
+  private static final double[] POWERS = new double[23];
+
+  static {
+    POWERS[0] = 1;
+    for(int p = 1; p < POWERS.length; p++) POWERS[p] = POWERS[p - 1] * 10;
+  }
+
+  /** Geometry factory. */
+  private final GeometryFactory factory;
+
+  /**
+   * Constructor.
+   * @param f geometry factory
+   */
+  private GeoReader(final GeometryFactory f) {
+    factory = f;
+  }
+
+  /**
+   * Creates a geometry from the specified element.
+   * @param node element
+   * @param factory geometry factory
+   * @return geometry, or {@code null} if the element cannot be handled
+   */
+  static Geometry read(final ANode node, final GeometryFactory factory) {
+    try {
+      return new GeoReader(factory).geometry(node);
+    } catch(final RuntimeException ex) {
+      // invalid geometry: error will be raised by the JTS parser
+      return null;
+    }
+  }
+
+  /**
+   * Creates a geometry.
+   * @param node element
+   * @return geometry or {@code null}
+   */
+  private Geometry geometry(final ANode node) {
+    final byte[] name = name(node);
+    if(eq(name, POINT)) {
+      final CoordinateSequence cs = coordinates(node);
+      return cs == null || cs.size() != 1 ? null : factory.createPoint(cs);
+    }
+    if(eq(name, LINESTRING)) {
+      final CoordinateSequence cs = coordinates(node);
+      return cs == null ? null : factory.createLineString(cs);
+    }
+    if(eq(name, LINEARRING)) {
+      final CoordinateSequence cs = coordinates(node);
+      return cs == null ? null : factory.createLinearRing(cs);
+    }
+    if(eq(name, POLYGON)) return polygon(node);
+    if(eq(name, MULTIPOINT)) {
+      final Geometry[] geos = members(node, POINTMEMBER, POINT);
+      return geos == null ? null : factory.createMultiPoint(
+          Arrays.copyOf(geos, geos.length, Point[].class));
+    }
+    if(eq(name, MULTILINESTRING)) {
+      final Geometry[] geos = members(node, LINESTRINGMEMBER, LINESTRING);
+      return geos == null ? null : factory.createMultiLineString(
+          Arrays.copyOf(geos, geos.length, LineString[].class));
+    }
+    if(eq(name, MULTIPOLYGON)) {
+      final Geometry[] geos = members(node, POLYGONMEMBER, POLYGON);
+      return geos == null ? null : factory.createMultiPolygon(
+          Arrays.copyOf(geos, geos.length, Polygon[].class));
+    }
+    return null;
+  }
+
+  /**
+   * Creates the members of a multi geometry.
+   * @param node element
+   * @param member name of member elements
+   * @param type name of geometry elements
+   * @return geometries, or {@code null}
+   */
+  private Geometry[] members(final ANode node, final byte[] member, final byte[] type) {
+    final ArrayList<ANode> members = children(node);
+    if(members == null || members.isEmpty()) return null;
+    final Geometry[] geos = new Geometry[members.size()];
+    for(int m = 0; m < geos.length; m++) {
+      final ANode mem = members.get(m);
+      if(!eq(name(mem), member)) return null;
+      final ArrayList<ANode> ch = children(mem);
+      if(ch == null || ch.size() != 1 || !eq(name(ch.get(0)), type)) return null;
+      geos[m] = geometry(ch.get(0));
+      if(geos[m] == null) return null;
+    }
+    return geos;
+  }
+
+  /**
+   * Creates a polygon.
+   * @param node element
+   * @return polygon or {@code null}
+   */
+  private Polygon polygon(final ANode node) {
+    final ArrayList<ANode> ch = children(node);
+    if(ch == null || ch.isEmpty()) return null;
+
+    LinearRing shell = null;
+    final ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
+    for(final ANode c : ch) {
+      final byte[] name = name(c);
+      final boolean outer = eq(name, OUTER);
+      if(!outer && !eq(name, INNER) || outer == (shell != null)) {
+        return null;
+      }
+      final ArrayList<ANode> rings = children(c);
+      if(rings == null || rings.size() != 1) return null;
+      final ANode r = rings.get(0);
+      if(!eq(name(r), LINEARRING)) return null;
+      final Geometry ring = geometry(r);
+      if(ring == null) return null;
+      if(outer) shell = (LinearRing) ring;
+      else holes.add((LinearRing) ring);
+    }
+    return factory.createPolygon(shell, holes.toArray(new LinearRing[holes.size()]));
+  }
+
+  /**
+   * Reads the coordinates of an element, which must either have a single
+   * {@code gml:coordinates} child or several {@code gml:coord} children.
+   * @param node element
+   * @return coordinates, or {@code null}
+   */
+  private CoordinateSequence coordinates(final ANode node) {
+    final ArrayList<ANode> ch = children(node);
+    if(ch == null || ch.isEmpty()) return null;
+
+    final ArrayList<Coordinate> list = new ArrayList<Coordinate>();
+    if(eq(name(ch.get(0)), COORDINATES)) {
+      if(ch.size() != 1 || !tuples(text(ch.get(0)), list)) return null;
+    } else {
+      for(final ANode c : ch) {
+        if(!eq(name(c), COORD)) return null;
+        final Coordinate coord = coord(c);
+        if(coord == null) return null;
+        list.add(coord);
+      }
+    }
+    return factory.getCoordinateSequenceFactory().create(
+        list.toArray(new Coordinate[list.size()]));
+  }
+
+  /**
+   * Reads a coordinate from a {@code gml:coord} element.
+   * @param node element
+   * @return coordinate, or {@code null}
+   */
+  private static Coordinate coord(final ANode node) {
+    final ArrayList<ANode> ch = children(node);
+    if(ch == null || ch.size() < 2 || ch.size() > 3) return null;
+    final double[] xyz = { 0, 0, Double.NaN };
+    for(int c = 0; c < ch.size(); c++) {
+      final ANode n = ch.get(c);
+      if(!eq(name(n), XYZ[c])) return null;
+      final byte[] text = text(n);
+      if(text == null) return null;
+      int s = 0, e = text.length;
+      while(s < e && space(text[s])) s++;
+      while(e > s && space(text[e - 1])) e--;
+      xyz[c] = number(text, s, e);
+      if(Double.isNaN(xyz[c])) return null;
+    }
+    return new Coordinate(xyz[0], xyz[1], xyz[2]);
+  }
+
+  /**
+   * Parses tuples of the form {@code x,y[,z]}, separated by single whitespaces.
+   * @param text text
+   * @param list list to which the coordinates are added
+   * @return success flag
+   */
+  private static boolean tuples(final byte[] text, final ArrayList<Coordinate> list) {
+    if(text == null) return false;
+    int s = 0, e = text.length;
+    while(s < e && space(text[s])) s++;
+    while(e > s && space(text[e - 1])) e--;
+    if(s == e) return false;
+
+    final double[] xyz = new double[3];
+    while(s < e) {
+      // parse a single tuple
+      int n = 0;
+      while(true) {
+        int t = s;
+        while(t < e && text[t] != ',' && !space(text[t])) t++;
+        if(n == 3) return false;
+        xyz[n] = number(text, s, t);
+        if(Double.isNaN(xyz[n++])) return false;
+        s = t + 1;
+        if(t == e || space(text[t])) break;
+      }
+      if(n < 2) return false;
+      list.add(new Coordinate(xyz[0], xyz[1], n == 3 ? xyz[2] : Double.NaN));
+      // reject multiple separators
+      if(s < e && space(text[s])) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Parses a double value. Integers and decimals with up to 15 digits are
+   * directly converted; all other values are parsed by {@link Double#parseDouble}.
+   * @param text text
+   * @param s start position
+   * @param e end position
+   * @return value, or {@link Double#NaN} if the input is invalid
+   */
+  private static double number(final byte[] text, final int s, final int e) {
+    if(s == e) return Double.NaN;
+    int p = s;
+    final boolean neg = text[p] == '-';
+    if(neg || text[p] == '+') p++;
+
+    long value = 0;
+    int digits = 0, scale = -1;
+    for(; p < e; p++) {
+      final int b = text[p];
+      if(b >= '0' && b <= '9') {
+        value = value * 10 + b - '0';
+        if(value != 0 && ++digits > 15) break;
+        if(scale != -1) scale++;
+      } else if(b == '.' && scale == -1) {
+        scale = 0;
+      } else {
+        break;
+      }
+    }
+    // fast path: exact value and exact power of ten
+    if(p == e && p > (neg || text[s] == '+' ? s + 1 : s) && scale != 0) {
+      final double d = scale > 0 ? value / POWERS[scale] : value;
+      return neg ? -d : d;
+    }
+    try {
+      return Double.parseDouble(string(text, s, e - s));
+    } catch(final NumberFormatException ex) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Returns the local name of a GML element without attributes.
+   * @param node node
+   * @return local name, or an empty array
+   */
+  private static byte[] name(final ANode node) {
+    if(node.type != NodeType.ELM || node.attributes().next() != null) return EMPTY;
+    final QNm qname = node.qname();
+    return eq(qname.uri(), URI) ? qname.local() : EMPTY;
+  }
+
+  /**
+   * Returns the child elements of a node. Whitespace text nodes are ignored.
+   * @param node node
+   * @return children, or {@code null} if the node has other children
+   */
+  private static ArrayList<ANode> children(final ANode node) {
+    final ArrayList<ANode> list = new ArrayList<ANode>();
+    final AxisIter ai = node.children();
+    for(ANode n; (n = ai.next()) != null;) {
+      if(n.type == NodeType.ELM) list.add(n);
+      else if(n.type != NodeType.TXT || !ws(n.string())) return null;
+    }
+    return list;
+  }
+
+  /**
+   * Returns the text of a node that only has a single text child.
+   * @param node node
+   * @return text, or {@code null}
+   */
+  private static byte[] text(final ANode node) {
+    if(node.attributes().next() != null) return null;
+    final AxisIter ai = node.children();
+    final ANode t = ai.next();
+    return t == null || t.type != NodeType.TXT || ai.next() != null ? null :
+      t.string();
+  }
+
+  /**
+   * Checks if the specified byte is a whitespace.
+   * @param b byte
+   * @return result of check
+   */
+  private static boolean space(final byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+}
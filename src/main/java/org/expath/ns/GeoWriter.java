@@ -0,0 +1,165 @@
+package org.expath.ns;
+
+import static org.basex.util.Token.*;
+
+import org.basex.core.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.util.*;
+
+import com.vividsolutions.jts.geom.*;
+
+/**
+ * This class creates GML 2 elements from geometries. The structure of the
+ * elements corresponds to the output of the JTS {@code GMLWriter}, but the
+ * nodes are directly constructed: no string representation will be parsed,
+ * and no database instance will be created.
+ *
+ * By default, coordinates are written with full precision. The number of
+ * fractional digits can be limited via the {@code org.basex.geoprecision}
+ * system property.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class GeoWriter {
+  /** GML URI. */
+  private static final byte[] URI = token("http://www.opengis.net/gml");
+  /** Prefix: "gml". */
+  private static final String GML = "gml";
+  /** Maximum number of fractional digits (-1: full precision). */
+  private static final int PRECISION =
+      Integer.getInteger(Prop.DBPREFIX + "geoprecision", -1);
+  /** Scale factor for rounding coordinates. */
+  private static final double SCALE = PRECISION < 0 ? 0 : Math.pow(10, PRECISION);
+
+  /** QName gml:Point. */
+  private static final QNm POINT = QNm.get(GML, "Point", URI);
+  /** QName gml:LineString. */
+  private static final QNm LINESTRING = QNm.get(GML, "LineString", URI);
+  /** QName gml:LinearRing. */
+  private static final QNm LINEARRING = QNm.get(GML, "LinearRing", URI);
+  /** QName gml:Polygon. */
+  private static final QNm POLYGON = QNm.get(GML, "Polygon", URI);
+  /** QName gml:outerBoundaryIs. */
+  private static final QNm OUTER = QNm.get(GML, "outerBoundaryIs", URI);
+  /** QName gml:innerBoundaryIs. */
+  private static final QNm INNER = QNm.get(GML, "innerBoundaryIs", URI);
+  /** QName gml:MultiPoint. */
+  private static final QNm MULTIPOINT = QNm.get(GML, "MultiPoint", URI);
+  /** QName gml:pointMember. */
+  private static final QNm POINTMEMBER = QNm.get(GML, "pointMember", URI);
+  /** QName gml:MultiLineString. */
+  private static final QNm MULTILINESTRING = QNm.get(GML, "MultiLineString", URI);
+  /** QName gml:lineStringMember. */
+  private static final QNm LINESTRINGMEMBER = QNm.get(GML, "lineStringMember", URI);
+  /** QName gml:MultiPolygon. */
+  private static final QNm MULTIPOLYGON = QNm.get(GML, "MultiPolygon", URI);
+  /** QName gml:polygonMember. */
+  private static final QNm POLYGONMEMBER = QNm.get(GML, "polygonMember", URI);
+  /** QName gml:MultiGeometry. */
+  private static final QNm MULTIGEOMETRY = QNm.get(GML, "MultiGeometry", URI);
+  /** QName gml:geometryMember. */
+  private static final QNm GEOMETRYMEMBER = QNm.get(GML, "geometryMember", URI);
+  /** QName gml:coordinates. */
+  private static final QNm COORDINATES = QNm.get(GML, "coordinates", URI);
+
+  /** Private constructor. */
+  private GeoWriter() { }
+
+  /**
+   * Creates an element for the specified geometry.
+   * The GML namespace is declared at the returned element.
+   * @param geo geometry
+   * @return element, or {@code null} if the geometry type is not supported
+   */
+  static FElem write(final Geometry geo) {
+    final FElem elem = geometry(geo);
+    return elem == null ? null : elem.declareNS();
+  }
+
+  /**
+   * Creates an element for the specified geometry.
+   * @param geo geometry
+   * @return element, or {@code null} if the geometry type is not supported
+   */
+  private static FElem geometry(final Geometry geo) {
+    if(geo instanceof Point) return coordinates(POINT, geo.getCoordinates());
+    if(geo instanceof LinearRing) return coordinates(LINEARRING, geo.getCoordinates());
+    if(geo instanceof LineString) return coordinates(LINESTRING, geo.getCoordinates());
+    if(geo instanceof Polygon) {
+      final Polygon p = (Polygon) geo;
+      final FElem elem = new FElem(POLYGON);
+      elem.add(new FElem(OUTER).add(
+          coordinates(LINEARRING, p.getExteriorRing().getCoordinates())));
+      final int rs = p.getNumInteriorRing();
+      for(int r = 0; r < rs; r++) {
+        elem.add(new FElem(INNER).add(
+            coordinates(LINEARRING, p.getInteriorRingN(r).getCoordinates())));
+      }
+      return elem;
+    }
+    if(geo instanceof MultiPoint) return members(MULTIPOINT, POINTMEMBER, geo);
+    if(geo instanceof MultiLineString) {
+      return members(MULTILINESTRING, LINESTRINGMEMBER, geo);
+    }
+    if(geo instanceof MultiPolygon) return members(MULTIPOLYGON, POLYGONMEMBER, geo);
+    if(geo instanceof GeometryCollection) {
+      return members(MULTIGEOMETRY, GEOMETRYMEMBER, geo);
+    }
+    return null;
+  }
+
+  /**
+   * Creates an element for a geometry collection.
+   * @param name name of the element
+   * @param member name of the member elements
+   * @param geo geometry collection
+   * @return element, or {@code null} if a geometry type is not supported
+   */
+  private static FElem members(final QNm name, final QNm member, final Geometry geo) {
+    final FElem elem = new FElem(name);
+    final int gs = geo.getNumGeometries();
+    for(int g = 0; g < gs; g++) {
+      final FElem child = geometry(geo.getGeometryN(g));
+      if(child == null) return null;
+      elem.add(new FElem(member).add(child));
+    }
+    return elem;
+  }
+
+  /**
+   * Creates an element with a {@code gml:coordinates} child.
+   * @param name name of the element
+   * @param coords coordinates
+   * @return element
+   */
+  private static FElem coordinates(final QNm name, final Coordinate[] coords) {
+    final FElem elem = new FElem(COORDINATES);
+    final int cl = coords.length;
+    if(cl > 0) {
+      // z values are written if the first coordinate has a z value
+      final boolean z = !Double.isNaN(coords[0].z);
+      final TokenBuilder tb = new TokenBuilder();
+      for(int c = 0; c < cl; c++) {
+        if(c > 0) tb.add(' ');
+        final Coordinate crd = coords[c];
+        number(tb, crd.x);
+        number(tb.add(','), crd.y);
+        if(z) number(tb.add(','), crd.z);
+      }
+      elem.add(new FTxt(tb.finish()));
+    }
+    return new FElem(name).add(elem);
+  }
+
+  /**
+   * Adds a number to the token builder.
+   * @param tb token builder
+   * @param d number
+   */
+  private static void number(final TokenBuilder tb, final double d) {
+    tb.add(Double.toString(SCALE == 0 || Double.isNaN(d) || Double.isInfinite(d) ? d :
+      Math.rint(d * SCALE) / SCALE));
+  }
+}
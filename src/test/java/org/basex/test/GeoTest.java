@@ -3,6 +3,8 @@ package org.basex.test;
 import static org.basex.query.util.Err.*;
 import static org.junit.Assert.*;
 
+import org.basex.core.*;
+import org.basex.core.cmd.*;
 import org.basex.query.*;
 import org.basex.query.value.item.*;
 import org.expath.ns.*;
@@ -858,6 +860,117 @@ public final class GeoTest extends AdvancedQueryTest {
     runError("geo:interiorRingN()", FUNCARGSG.qname());
   }
 
+  /** Test method. */
+  @Test
+  public void cache() {
+    // cached geometries must be assigned to the correct nodes
+    runQuery("let $p := for $i in 1 to 10 return <gml:Point><gml:coordinates>" +
+            "{ $i },{ $i }</gml:coordinates></gml:Point> " +
+            "return sum(for $a in $p, $b in $p return geo:distance($a, $b)) > 0", "true");
+    runQuery("let $p := for $i in 1 to 10 return <gml:Point><gml:coordinates>" +
+            "{ $i },{ $i }</gml:coordinates></gml:Point> " +
+            "return count(for $a in $p, $b in $p where geo:equals($a, $b) return $a)",
+            "10");
+  }
+
+  /** Test method. */
+  @Test
+  public void read() {
+    // coordinates are directly read from nodes
+    runQuery("geo:asText(<gml:Point><gml:coordinates>0.1,-123.456</gml:coordinates>" +
+            "</gml:Point>)", "POINT (0.1 -123.456)");
+    runQuery("geo:asText(<gml:Point><gml:coord><gml:X>1e3</gml:X><gml:Y>.5</gml:Y>" +
+            "</gml:coord></gml:Point>)", "POINT (1000 0.5)");
+    runQuery("geo:z(<gml:Point><gml:coordinates>1,2,3.25</gml:coordinates>" +
+            "</gml:Point>)", "3.25");
+    runQuery("geo:area(<gml:MultiPolygon>" +
+            "<gml:polygonMember><gml:Polygon><gml:outerBoundaryIs><gml:LinearRing>" +
+            "<gml:coordinates>0,0 10,0 10,10 0,10 0,0</gml:coordinates>" +
+            "</gml:LinearRing></gml:outerBoundaryIs><gml:innerBoundaryIs>" +
+            "<gml:LinearRing><gml:coordinates>1,1 2,1 2,2 1,2 1,1</gml:coordinates>" +
+            "</gml:LinearRing></gml:innerBoundaryIs></gml:Polygon></gml:polygonMember>" +
+            "<gml:polygonMember><gml:Polygon><gml:outerBoundaryIs><gml:LinearRing>" +
+            "<gml:coordinates>20,20 21,20 21,21 20,21 20,20</gml:coordinates>" +
+            "</gml:LinearRing></gml:outerBoundaryIs></gml:Polygon></gml:polygonMember>" +
+            "</gml:MultiPolygon>)", "100");
+
+    // invalid input is rejected by the GML parser
+    runError("geo:area(<gml:Polygon><gml:outerBoundaryIs><gml:LinearRing>" +
+            "<gml:coordinates>0,0 10,0 10,10</gml:coordinates></gml:LinearRing>" +
+            "</gml:outerBoundaryIs></gml:Polygon>)", GeoErrors.qname(2));
+  }
+
+  /** Test method. */
+  @Test
+  public void write() {
+    // results are created as element nodes
+    runQuery("geo:geometryN(<gml:MultiLineString><gml:lineStringMember><gml:LineString>" +
+            "<gml:coordinates>1,2,3 4,5,6</gml:coordinates></gml:LineString>" +
+            "</gml:lineStringMember></gml:MultiLineString>, 1)",
+            "<gml:LineString xmlns:gml=\"http://www.opengis.net/gml\">" +
+            "<gml:coordinates>1.0,2.0,3.0 4.0,5.0,6.0</gml:coordinates></gml:LineString>");
+    runQuery("geo:envelope(<gml:LinearRing><gml:coordinates>1,1 20,1 50,30 1,1" +
+            "</gml:coordinates></gml:LinearRing>)/gml:outerBoundaryIs/gml:LinearRing/" +
+            "gml:coordinates/string()", "1.0,1.0 1.0,30.0 50.0,30.0 50.0,1.0 1.0,1.0");
+  }
+
+  /**
+   * Test method.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void index() throws BaseXException {
+    final StringBuilder sb = new StringBuilder("<geo xmlns:gml='http://www.opengis.net/gml'>");
+    for(int i = 1; i <= 100; i++) {
+      sb.append("<gml:Point id='").append(i).append("'><gml:coordinates>").append(i).
+        append(',').append(i).append("</gml:coordinates></gml:Point>");
+    }
+    sb.append("<gml:MultiPoint id='m'><gml:pointMember><gml:Point><gml:coordinates>" +
+        "200,0</gml:coordinates></gml:Point></gml:pointMember></gml:MultiPoint></geo>");
+    new CreateDB("GeoIndex", sb.toString()).execute(context);
+    try {
+      runQuery("geo:index-intersects('GeoIndex', <gml:Polygon><gml:outerBoundaryIs>" +
+          "<gml:LinearRing><gml:coordinates>0,0 5.5,0 5.5,5.5 0,5.5 0,0</gml:coordinates>" +
+          "</gml:LinearRing></gml:outerBoundaryIs></gml:Polygon>)/@id/string()",
+          "1 2 3 4 5");
+      runQuery("geo:index-nearest('GeoIndex', <gml:Point><gml:coordinates>50.2,50.2" +
+          "</gml:coordinates></gml:Point>, 3)/@id/string()", "50 51 49");
+      runQuery("geo:index-nearest('GeoIndex', <gml:Point><gml:coordinates>300,0" +
+          "</gml:coordinates></gml:Point>, 1)/@id/string()", "m");
+      runQuery("count(geo:index-nearest('GeoIndex', <gml:Point><gml:coordinates>0,0" +
+          "</gml:coordinates></gml:Point>, 1000))", "101");
+
+      // index is rebuilt after updates
+      runQuery("insert node <gml:Point id='new'><gml:coordinates>2,1</gml:coordinates>" +
+          "</gml:Point> into db:open('GeoIndex')/geo", "");
+      runQuery("geo:index-intersects('GeoIndex', <gml:LineString><gml:coordinates>" +
+          "0,1 3,1</gml:coordinates></gml:LineString>)/@id/string()", "1 new");
+    } finally {
+      new DropDB("GeoIndex").execute(context);
+    }
+  }
+
+  /** Test method. */
+  @Test
+  public void filter() {
+    final String zone = "<gml:Polygon><gml:outerBoundaryIs><gml:LinearRing>" +
+        "<gml:coordinates>0,0 100,0 100,100 0,0</gml:coordinates></gml:LinearRing>" +
+        "</gml:outerBoundaryIs></gml:Polygon>";
+    final String points = "for $i in 1 to 10000 return <gml:Point>" +
+        "<gml:coordinates>{ $i mod 200 },{ $i mod 7 }</gml:coordinates></gml:Point>";
+    runQuery("count(geo:filter-contains(" + zone + ", " + points + ")) = " +
+        "count(for $p in " + points + " where geo:contains(" + zone + ", $p) return $p)",
+        "true");
+    runQuery("count(geo:filter-intersects(" + zone + ", " + points + ")) = " +
+        "count(for $p in " + points + " where geo:intersects(" + zone + ", $p) return $p)",
+        "true");
+    runQuery("geo:filter-intersects(" + zone + ", (<gml:Point><gml:coordinates>5,1" +
+        "</gml:coordinates></gml:Point>, <gml:Point><gml:coordinates>1,5" +
+        "</gml:coordinates></gml:Point>))//text()", "5,1");
+    runQuery("geo:filter-contains(" + zone + ", ())", "");
+    runError("geo:filter-contains(" + zone + ", text { 'a' })", FUNCMP.qname());
+  }
+
   /**
    * Query.
    * @param query query
@@ -3,14 +3,17 @@ package org.basex.test.api.xmldb;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.util.*;
 
 import javax.xml.parsers.*;
 
+import org.basex.api.xmldb.*;
 import org.junit.*;
 import org.w3c.dom.*;
 import org.xml.sax.*;
 import org.xml.sax.helpers.*;
 import org.xmldb.api.base.*;
+import org.xmldb.api.base.Collection;
 import org.xmldb.api.modules.*;
 
 /**
@@ -237,6 +240,34 @@ public class CollectionTest extends XMLDBBaseTest {
     });
   }
 
+  @Test
+  public void testStoreResources() throws Exception {
+    // store several resources at once, and replace an existing one
+    final BXCollection bx = (BXCollection) coll;
+    final Resource[] res = new Resource[100];
+    for(int r = 0; r < res.length; r++) {
+      res[r] = coll.createResource(r == 0 ? DOC1 : "doc" + r, XMLResource.RESOURCE_TYPE);
+      res[r].setContent("<xml>" + r + "</xml>");
+    }
+    bx.storeResources(res);
+    assertEquals("Wrong number of documents.", 100, coll.getResourceCount());
+    assertEquals("Document was not replaced.", "<xml>0</xml>",
+        coll.getResource(DOC1).getContent());
+
+    // faulty resources are rejected, and no resources are stored
+    final Resource faulty = coll.createResource("Faulty", XMLResource.RESOURCE_TYPE);
+    faulty.setContent("<xml");
+    final Resource correct = coll.createResource("Correct", XMLResource.RESOURCE_TYPE);
+    correct.setContent("<xml/>");
+    try {
+      bx.storeResources(correct, faulty);
+      fail("Resource is faulty.");
+    } catch(final XMLDBException ex) {
+      checkCode(ErrorCodes.INVALID_RESOURCE, ex);
+    }
+    assertEquals("Wrong number of documents.", 100, coll.getResourceCount());
+  }
+
   @Test
   public void testRemoveResource() throws Exception {
     final Resource res =
@@ -281,6 +312,11 @@ public class CollectionTest extends XMLDBBaseTest {
         fail("Returned ID not unique.");
       }
     }
+    // ids generated in the same millisecond must differ
+    final HashSet<Object> ids = new HashSet<Object>();
+    for(int i = 0; i < 1000; ++i) {
+      assertTrue("Returned ID not unique.", ids.add(code.run()));
+    }
     checkClosed(code);
   }
 
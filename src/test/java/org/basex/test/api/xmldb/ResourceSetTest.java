@@ -98,6 +98,21 @@ public class ResourceSetTest extends XMLDBBaseTest {
     assertEquals("Wrong result size.", 0, set.getSize());
   }
 
+  @Test
+  public void testLargeResult() throws Exception {
+    // resources are created while the result is iterated
+    final ResourceSet set = serv.query("1 to 100000");
+    assertEquals("Wrong result size.", 100000, set.getSize());
+    final ResourceIterator iter = set.getIterator();
+    long size = 0;
+    while(iter.hasMoreResources()) {
+      iter.nextResource();
+      ++size;
+    }
+    assertEquals("Wrong number of results.", 100000, size);
+    assertEquals("Wrong result.", "50000", set.getResource(49999).getContent());
+  }
+
   @Test
   public void testClear() throws Exception {
     // test created resource
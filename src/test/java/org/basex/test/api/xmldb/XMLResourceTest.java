@@ -115,6 +115,23 @@ public class XMLResourceTest extends XMLDBBaseTest {
     ((XMLResource) coll.getResource(DOC1)).getContentAsSAX(ch);
   }
 
+  @Test
+  public void testGetContentAsSAXEvents() throws Exception {
+    // compare direct emission with events of the parsed serialization
+    final XMLResource doc = (XMLResource) coll.getResource(DOC1);
+    final EventLog direct = new EventLog();
+    doc.getContentAsSAX(direct);
+
+    final EventLog parsed = new EventLog();
+    final SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    final XMLReader reader = factory.newSAXParser().getXMLReader();
+    reader.setContentHandler(parsed);
+    reader.parse(new InputSource(new StringReader(doc.getContent().toString())));
+
+    assertEquals("Different SAX events.", parsed.log.toString(), direct.log.toString());
+  }
+
   @Test
   public void testSetContentAsSAX() throws Exception {
     // store small document
@@ -144,6 +161,44 @@ public class XMLResourceTest extends XMLDBBaseTest {
     assertEquals("Wrong number of documents.", 1, coll.getResourceCount());
   }
 
+  /** Content handler that logs all events. */
+  private static final class EventLog extends DefaultHandler {
+    /** Logged events. */
+    final StringBuilder log = new StringBuilder();
+
+    @Override
+    public void startPrefixMapping(final String pref, final String uri) {
+      log.append("ns(").append(pref).append('=').append(uri).append(')');
+    }
+
+    @Override
+    public void startElement(final String u, final String ln, final String qn,
+        final Attributes a) {
+      log.append('<').append(u).append(':').append(ln).append('|').append(qn);
+      for(int i = 0; i < a.getLength(); i++) {
+        log.append(' ').append(a.getQName(i)).append('=').append(a.getValue(i));
+      }
+      log.append('>');
+    }
+
+    @Override
+    public void endElement(final String u, final String ln, final String qn) {
+      log.append("</").append(qn).append('>');
+    }
+
+    @Override
+    public void characters(final char[] ch, final int s, final int l) {
+      // ignore whitespaces added by the serializer
+      final String text = new String(ch, s, l);
+      if(!text.trim().isEmpty()) log.append(text);
+    }
+
+    @Override
+    public void processingInstruction(final String t, final String d) {
+      log.append("<?").append(t).append(' ').append(d).append("?>");
+    }
+  }
+
   /**
    * Compares an XML resource with a file on disk.
    * @param file file name
@@ -8,6 +8,7 @@ import java.io.*;
 import java.net.*;
 
 import org.basex.core.*;
+import org.basex.http.*;
 import org.basex.http.rest.*;
 import org.basex.io.in.*;
 import org.basex.query.func.*;
@@ -205,6 +206,57 @@ public class RESTTest extends HTTPTest {
         string.startsWith(prefix));
   }
 
+  /**
+   * GET Test: conditional requests and byte ranges.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void getRange() throws IOException {
+    put(ROOT + NAME, null);
+    put(ROOT + NAME + "/raw", new ArrayInput(token("0123456789")), APP_OCTET);
+
+    // retrieve entity tag
+    HttpURLConnection conn = connection(NAME + "/raw", null, null);
+    assertEquals(HttpURLConnection.HTTP_OK, conn.getResponseCode());
+    assertEquals("0123456789", read(conn.getInputStream()));
+    final String etag = conn.getHeaderField(HTTPText.ETAG);
+    assertNotNull(etag);
+    conn.disconnect();
+
+    // unmodified resource
+    conn = connection(NAME + "/raw", HTTPText.IF_NONE_MATCH, etag);
+    assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, conn.getResponseCode());
+    conn.disconnect();
+
+    // single range
+    conn = connection(NAME + "/raw", HTTPText.RANGE, "bytes=2-4");
+    assertEquals(HttpURLConnection.HTTP_PARTIAL, conn.getResponseCode());
+    assertEquals("bytes 2-4/10", conn.getHeaderField(HTTPText.CONTENT_RANGE));
+    assertEquals("234", read(conn.getInputStream()));
+    conn.disconnect();
+
+    // suffix range
+    conn = connection(NAME + "/raw", HTTPText.RANGE, "bytes=-3");
+    assertEquals("789", read(conn.getInputStream()));
+    conn.disconnect();
+
+    // multiple ranges
+    conn = connection(NAME + "/raw", HTTPText.RANGE, "bytes=0-0,8-");
+    assertEquals(HttpURLConnection.HTTP_PARTIAL, conn.getResponseCode());
+    assertStartsWith(conn.getContentType(), "multipart/byteranges");
+    final String multi = read(conn.getInputStream());
+    assertContains(multi, "bytes 0-0/10");
+    assertContains(multi, "bytes 8-9/10");
+    conn.disconnect();
+
+    // unsatisfiable range
+    conn = connection(NAME + "/raw", HTTPText.RANGE, "bytes=20-");
+    assertEquals(416, conn.getResponseCode());
+    conn.disconnect();
+
+    delete(NAME);
+  }
+
   /**
    * GET Test: specify an option.
    * @throws IOException I/O exception
@@ -469,6 +521,21 @@ public class RESTTest extends HTTPTest {
     if(!str.contains(sub)) fail('\'' + sub + "' not contained in '" + str + "'.");
   }
 
+  /**
+   * Opens a connection for the specified GET request.
+   * @param query request
+   * @param header name of request header (optional, may be {@code null})
+   * @param value value of request header
+   * @return connection
+   * @throws IOException I/O exception
+   */
+  private static HttpURLConnection connection(final String query, final String header,
+      final String value) throws IOException {
+    final HttpURLConnection conn = (HttpURLConnection) new URL(ROOT + query).openConnection();
+    if(header != null) conn.setRequestProperty(header, value);
+    return conn;
+  }
+
   /**
    * Executes the specified GET request and returns the content type.
    * @param query request